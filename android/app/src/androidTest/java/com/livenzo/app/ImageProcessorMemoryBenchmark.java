@@ -0,0 +1,131 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Peak heap (Java plus native, where bitmaps live on API 26+) while turning a 12 MP camera JPEG
+ * into an upload, compared with decoding it at full size as the base64 WebView path did.
+ * Numbers are reported as instrumentation status and in logcat under LIVENZO_BENCH.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageProcessorMemoryBenchmark {
+    private static final String TAG = "LIVENZO_BENCH";
+    private static final int WIDTH = 4032;
+    private static final int HEIGHT = 3024;
+    private static final long MAX_PIPELINE_PEAK_BYTES = 24L * 1024 * 1024;
+
+    private Context context;
+    private File source;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        source = new File(context.getCacheDir(), "bench_camera.jpg");
+        Bitmap photo = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        // Some structure so the JPEG is not trivially small
+        for (int y = 0; y < HEIGHT; y += 8) {
+            for (int x = 0; x < WIDTH; x += 8) {
+                photo.setPixel(x, y, Color.rgb(x & 0xFF, y & 0xFF, (x ^ y) & 0xFF));
+            }
+        }
+        OutputStream out = new FileOutputStream(source);
+        try {
+            photo.compress(Bitmap.CompressFormat.JPEG, 92, out);
+        } finally {
+            out.close();
+        }
+        photo.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        source.delete();
+    }
+
+    @Test
+    public void pipelinePeakHeapStaysFarBelowFullDecode() throws Exception {
+        long fullDecode = peakDuring(() -> {
+            Bitmap full = BitmapFactory.decodeFile(source.getPath());
+            full.recycle();
+        });
+        long pipeline = peakDuring(() -> {
+            ImageProcessor.Result result = ImageProcessor.process(context, Uri.fromFile(source), 1600, 80, 400 * 1024);
+            result.file.delete();
+        });
+
+        Bundle status = new Bundle();
+        status.putLong("full_decode_peak_bytes", fullDecode);
+        status.putLong("pipeline_peak_bytes", pipeline);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+        Log.i(TAG, "Peak heap: full decode " + fullDecode + " B, pipeline " + pipeline + " B");
+
+        assertTrue("pipeline peak " + pipeline, pipeline < MAX_PIPELINE_PEAK_BYTES);
+        assertTrue("pipeline " + pipeline + " vs full decode " + fullDecode, pipeline * 4 < fullDecode);
+    }
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    /** Highest heap use above the starting point, sampled every millisecond while work runs. */
+    private static long peakDuring(Work work) throws Exception {
+        settle();
+        final long baseline = heapInUse();
+        final AtomicLong peak = new AtomicLong();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peak.set(Math.max(peak.get(), heapInUse() - baseline));
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-sampler");
+        sampler.start();
+        try {
+            work.run();
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+        return Math.max(peak.get(), heapInUse() - baseline);
+    }
+
+    private static long heapInUse() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+
+    private static void settle() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Thread.sleep(50);
+        }
+    }
+}
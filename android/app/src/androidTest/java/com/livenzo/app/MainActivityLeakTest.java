@@ -0,0 +1,50 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A MainActivity destroyed by a configuration change must become unreachable: the bridge, the
+ * executors and the session listeners it talks to only hold it weakly or drop it in onDestroy.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainActivityLeakTest {
+
+    @Test
+    public void recreatedActivityIsCollected() throws Exception {
+        final AtomicReference<WeakReference<MainActivity>> first = new AtomicReference<>();
+        final AtomicReference<WeakReference<MainActivity>> second = new AtomicReference<>();
+        ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class);
+        try {
+            scenario.onActivity(activity -> first.set(new WeakReference<>(activity)));
+            scenario.recreate();
+            scenario.onActivity(activity -> second.set(new WeakReference<>(activity)));
+
+            awaitCollected(first.get());
+            assertNull("activity destroyed by recreate() is still reachable", first.get().get());
+            assertNotNull(second.get().get());
+        } finally {
+            scenario.close();
+        }
+
+        awaitCollected(second.get());
+        assertNull("closed activity is still reachable", second.get().get());
+    }
+
+    private static void awaitCollected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+    }
+}
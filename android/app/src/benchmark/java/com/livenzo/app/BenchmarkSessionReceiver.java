@@ -0,0 +1,31 @@
+package com.livenzo.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Seeds a signed-in user into livenzo_auth, the same keys a successful login sync writes, so the
+ * :benchmark cold start scenario can launch logged in. SessionState only reads the seeded uid and
+ * phone in builds with SEEDED_SESSION set.
+ *
+ * adb shell am broadcast -a com.livenzo.app.BENCHMARK_SESSION -p com.livenzo.app -f 32 --es uid ... --es phone ...
+ */
+public class BenchmarkSessionReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String uid = intent.getStringExtra("uid");
+        String phone = intent.getStringExtra("phone");
+        if (uid == null || phone == null) {
+            return;
+        }
+        // Committed before am broadcast returns, since the benchmark kills the process next
+        context.getSharedPreferences("livenzo_auth", Context.MODE_PRIVATE)
+            .edit()
+            .putString("firebase_uid", uid)
+            .putString("phone_number", phone)
+            .putBoolean("is_logged_in", true)
+            .commit();
+    }
+}
@@ -0,0 +1,62 @@
+package com.livenzo.app.notification;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+
+import com.livenzo.app.NetworkExecutor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Feeds a synthetic push through the same handling as a real FCM message, so the :benchmark
+ * push scenario does not depend on Google's delivery. String extras become the data payload;
+ * notification_title and notification_body, when present, stand in for the notification block.
+ *
+ * adb shell am broadcast -a com.livenzo.app.BENCHMARK_PUSH -p com.livenzo.app --es type chat_message ...
+ */
+public class BenchmarkPushReceiver extends BroadcastReceiver {
+    private static final String NOTIFICATION_TITLE = "notification_title";
+    private static final String NOTIFICATION_BODY = "notification_body";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final Context appContext = context.getApplicationContext();
+        final Map<String, String> data = new HashMap<>();
+        String title = null;
+        String body = null;
+        Bundle extras = intent.getExtras();
+        if (extras != null) {
+            for (String key : extras.keySet()) {
+                Object value = extras.get(key);
+                if (!(value instanceof String)) {
+                    continue;
+                }
+                if (NOTIFICATION_TITLE.equals(key)) {
+                    title = (String) value;
+                } else if (NOTIFICATION_BODY.equals(key)) {
+                    body = (String) value;
+                } else {
+                    data.put(key, (String) value);
+                }
+            }
+        }
+        final boolean hasNotification = title != null || body != null;
+        final String notificationTitle = title;
+        final String notificationBody = body;
+
+        // FCM delivers off the main thread too
+        final PendingResult result = goAsync();
+        NetworkExecutor.getInstance().submitBackground(null, "benchmark-push", () -> {
+            try {
+                LivenzoFirebaseMessagingService.createNotificationChannel(appContext);
+                LivenzoFirebaseMessagingService.handleMessage(appContext, data, hasNotification,
+                    notificationTitle, notificationBody);
+            } finally {
+                result.finish();
+            }
+        });
+    }
+}
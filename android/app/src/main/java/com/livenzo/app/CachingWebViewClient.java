@@ -0,0 +1,28 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+
+/**
+ * Capacitor's client with {@link WebResourceCache} in front. Bundled assets still go through the
+ * bridge's local server; only remote routes the cache knows about are intercepted.
+ */
+public class CachingWebViewClient extends BridgeWebViewClient {
+    private final WebResourceCache cache;
+
+    public CachingWebViewClient(Bridge bridge, Context context) {
+        super(bridge);
+        this.cache = WebResourceCache.getInstance(context);
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        WebResourceResponse cached = cache.intercept(request);
+        return cached != null ? cached : super.shouldInterceptRequest(view, request);
+    }
+}
@@ -0,0 +1,78 @@
+package com.livenzo.app;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Environment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Validates file sources handed over by page script. content:// URIs from other apps (the picker,
+ * camera, documents provider) are opened, as are images the Capacitor Camera plugin wrote for
+ * CameraResultType.Uri. Any other file path and this app's own providers are refused so the page
+ * can never read app-private files such as prefs, the outbox or the caches.
+ */
+final class ContentSources {
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".webp"};
+
+    private ContentSources() {
+    }
+
+    static Uri parse(Context context, String source) throws IOException {
+        if (source == null) {
+            throw new IOException("No source given");
+        }
+        Uri uri = Uri.parse(source);
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            return cameraOutput(context, uri);
+        }
+        String authority = uri.getAuthority();
+        if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme()) || authority == null || authority.isEmpty()) {
+            throw new IOException("Only content:// sources and camera photos are accepted");
+        }
+        String packageName = context.getPackageName();
+        if (authority.equals(packageName) || authority.startsWith(packageName + ".")) {
+            throw new IOException("Refusing to read from this app's own provider: " + authority);
+        }
+        return uri;
+    }
+
+    /**
+     * The camera plugin saves captures to external files/Pictures and copies gallery picks to the
+     * top of the cache dir. Only images directly inside one of those, after resolving links and
+     * dot segments, are accepted; subdirectories such as the web and entity caches are not.
+     */
+    private static Uri cameraOutput(Context context, Uri uri) throws IOException {
+        String path = uri.getPath();
+        if (path == null || path.isEmpty()) {
+            throw new IOException("Empty file source");
+        }
+        File file = new File(path).getCanonicalFile();
+        if (!isImageName(file.getName()) || !file.isFile()) {
+            throw new IOException("Not a camera image: " + uri);
+        }
+        File parent = file.getParentFile();
+        File pictures = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+        if (parent != null && (isSameDir(parent, pictures) || isSameDir(parent, context.getCacheDir()))) {
+            return Uri.fromFile(file);
+        }
+        throw new IOException("File sources must come from the camera output directory: " + uri);
+    }
+
+    private static boolean isSameDir(File dir, File allowed) throws IOException {
+        return allowed != null && dir.equals(allowed.getCanonicalFile());
+    }
+
+    private static boolean isImageName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
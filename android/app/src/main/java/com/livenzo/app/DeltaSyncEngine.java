@@ -0,0 +1,254 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URLEncoder;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pulls only rows changed since each table's cursor into {@link LocalStore}, page by page using
+ * keyset pagination on (watermark column, id), applying each page together with its cursor.
+ * Tables with a scope column are pulled only for the signed-in user. After a run has caught up,
+ * local rows whose id the server no longer returns are dropped.
+ */
+public final class DeltaSyncEngine {
+    private static final String TAG = "LIVENZO_NET";
+    private static final int PAGE_SIZE = 200;
+    // Pages pulled per table per run, first pull included; the rest is picked up by the next run
+    private static final int MAX_PAGES_PER_RUN = 20;
+    private static final int ID_PAGE_SIZE = 1000;
+
+    private static final Metrics.Histogram RUN_MS = Metrics.histogram("sync.delta_run_ms", Metrics.LATENCY_BUCKETS_MS);
+    private static final Metrics.Histogram LAG_MS = Metrics.histogram("sync.delta_lag_ms", new long[]{
+        60_000L, 5 * 60_000L, 15 * 60_000L, 60 * 60_000L, 6 * 60 * 60_000L, 24 * 60 * 60_000L, 7 * 24 * 60 * 60_000L});
+    private static final Metrics.Counter BYTES_RECEIVED = Metrics.counter("sync.delta_bytes_received");
+    private static final Metrics.Counter ROWS_APPLIED = Metrics.counter("sync.delta_rows_applied");
+    private static final Metrics.Counter FAILURES = Metrics.counter("sync.delta_failures");
+
+    private static volatile DeltaSyncEngine instance;
+
+    private final Context context;
+    private final LocalStore store;
+    private final NativeHttpClient client;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private DeltaSyncEngine(Context context) {
+        this(context, LocalStore.getInstance(context), NativeHttpClient.getInstance());
+        // The first Supabase session of a launch usually arrives after startup; sync as soon as it does
+        SessionState.getInstance(context).addListener((previous, current) -> {
+            if (previous.accessToken == null && current.accessToken != null) {
+                syncAll();
+            }
+        });
+    }
+
+    /** Tests pass an in-memory store and a client pointed at a local stand-in. */
+    DeltaSyncEngine(Context context, LocalStore store, NativeHttpClient client) {
+        this.context = context;
+        this.store = store;
+        this.client = client;
+    }
+
+    public static DeltaSyncEngine getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DeltaSyncEngine.class) {
+                if (instance == null) {
+                    instance = new DeltaSyncEngine(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a background sync of every local table. Returns false if one is already running, the
+     * background lane is full, or there is no Supabase session to read with.
+     */
+    public boolean syncAll() {
+        final String accessToken = SessionState.getInstance(context).get().accessToken;
+        if (accessToken == null) {
+            Log.d(TAG, "No Supabase session, skipping delta sync");
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Runnable task = () -> {
+            long startedAt = SystemClock.elapsedRealtime();
+            JSONObject applied = new JSONObject();
+            try {
+                for (String table : LocalStore.TABLES.keySet()) {
+                    try {
+                        applied.put(table, syncTable(table, accessToken));
+                    } catch (Exception e) {
+                        // One table failing (e.g. RLS) shouldn't hold back the others
+                        FAILURES.increment();
+                        Log.w(TAG, "Delta sync of " + table + " failed", e);
+                    }
+                }
+            } finally {
+                running.set(false);
+            }
+            RUN_MS.record(SystemClock.elapsedRealtime() - startedAt);
+            WebEventBridge.getInstance().dispatch("localStoreSynced", applied);
+        };
+        if (NetworkExecutor.getInstance().submitBackground(null, "delta-sync", task) == null) {
+            running.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    int syncTable(String tableName, String accessToken) throws Exception {
+        LocalStore.Table table = LocalStore.requireTable(tableName);
+        String scope = null;
+        if (table.scopeColumn != null) {
+            scope = RealtimeClient.subjectOf(accessToken);
+            if (scope == null) {
+                throw new IllegalStateException("No user id in the session to scope " + tableName + " to");
+            }
+        }
+        LocalStore.SyncCursor cursor = store.getCursor(tableName);
+        if (cursor.syncedAt > 0 && !equals(scope, cursor.scope)) {
+            // Pulled for another user; the cursor says nothing about this one's rows
+            Log.d(TAG, "Delta sync of " + tableName + " changed scope, pulling it again");
+            store.resetTable(tableName);
+            cursor = store.getCursor(tableName);
+        }
+        if (cursor.syncedAt > 0) {
+            LAG_MS.record(System.currentTimeMillis() - cursor.syncedAt);
+        }
+        if (cursor.isBackfilling() && cursor.backfillId == null) {
+            startBackfill(table, scope, accessToken);
+            cursor = store.getCursor(tableName);
+        }
+
+        // Each page is applied with its cursor as it arrives, so a capped or interrupted run,
+        // including the first pull, resumes where it stopped on the next one
+        int written = 0;
+        boolean caughtUp = false;
+        for (int page = 0; page < MAX_PAGES_PER_RUN; page++) {
+            boolean backfilling = cursor.isBackfilling();
+            NativeHttpClient.Response response = client.getRest(tableName, pageQuery(table, cursor, scope), accessToken);
+            BYTES_RECEIVED.add(response.bytesReceived);
+            if (!response.isSuccessful()) {
+                throw new IllegalStateException("Pull of " + tableName + " returned " + response.code);
+            }
+            JSONArray rows = new JSONArray(response.body);
+            boolean last = rows.length() < PAGE_SIZE;
+            String backfillId = null;
+            if (backfilling && !last) {
+                JSONObject lastRow = rows.getJSONObject(rows.length() - 1);
+                backfillId = lastRow.isNull("id") ? null : lastRow.optString("id", null);
+            }
+            if (rows.length() > 0 || backfilling) {
+                // An empty page still ends a first pull whose last page happened to be full
+                written += store.applyDelta(tableName, rows, backfillId, scope);
+                cursor = store.getCursor(tableName);
+            }
+            if (last) {
+                caughtUp = true;
+                break;
+            }
+        }
+        ROWS_APPLIED.add(written);
+
+        int removed = 0;
+        if (caughtUp) {
+            removed = store.retainOnly(tableName, pullIds(table, scope, accessToken));
+        }
+        Log.d(TAG, "Delta sync of " + tableName + " applied " + written + " row(s), removed " + removed
+            + (caughtUp ? "" : ", more left for the next run"));
+        return written;
+    }
+
+    /**
+     * Asks the server for its newest (watermark, id) before a first pull and records it as the
+     * mark the cursor moves to when the pull ends.
+     */
+    private void startBackfill(LocalStore.Table table, String scope, String accessToken) throws Exception {
+        String column = table.watermarkColumn;
+        StringBuilder query = new StringBuilder("select=id,").append(column).append(",created_at")
+            .append("&order=").append(column).append(".desc.nullslast,id.desc&limit=1");
+        if (scope != null) {
+            query.append('&').append(table.scopeColumn).append("=eq.").append(URLEncoder.encode(scope, "UTF-8"));
+        }
+        NativeHttpClient.Response response = client.getRest(table.name, query.toString(), accessToken);
+        BYTES_RECEIVED.add(response.bytesReceived);
+        if (!response.isSuccessful()) {
+            throw new IllegalStateException("Mark probe of " + table.name + " returned " + response.code);
+        }
+        JSONArray rows = new JSONArray(response.body);
+        JSONObject newest = rows.length() > 0 ? rows.getJSONObject(0) : null;
+        String mark = newest != null ? LocalStore.watermarkOf(table, newest) : null;
+        String markId = newest != null && !newest.isNull("id") ? newest.optString("id", null) : null;
+        store.startBackfill(table.name, mark != null && markId != null ? mark : null, markId, scope);
+    }
+
+    /**
+     * Every id the server still returns (in scope, and visible under RLS), so deleted rows and
+     * rows moved to another owner can be dropped; deletions never show up in a delta.
+     */
+    private Set<String> pullIds(LocalStore.Table table, String scope, String accessToken) throws Exception {
+        Set<String> ids = new HashSet<>();
+        String afterId = null;
+        while (true) {
+            StringBuilder query = new StringBuilder("select=id&order=id.asc&limit=").append(ID_PAGE_SIZE);
+            if (scope != null) {
+                query.append('&').append(table.scopeColumn).append("=eq.").append(URLEncoder.encode(scope, "UTF-8"));
+            }
+            if (afterId != null) {
+                query.append("&id=gt.").append(URLEncoder.encode(afterId, "UTF-8"));
+            }
+            NativeHttpClient.Response response = client.getRest(table.name, query.toString(), accessToken);
+            BYTES_RECEIVED.add(response.bytesReceived);
+            if (!response.isSuccessful()) {
+                throw new IllegalStateException("Id pull of " + table.name + " returned " + response.code);
+            }
+            JSONArray rows = new JSONArray(response.body);
+            for (int i = 0; i < rows.length(); i++) {
+                JSONObject row = rows.getJSONObject(i);
+                if (!row.isNull("id")) {
+                    afterId = row.optString("id", null);
+                    ids.add(afterId);
+                }
+            }
+            if (rows.length() < ID_PAGE_SIZE) {
+                return ids;
+            }
+        }
+    }
+
+    private static String pageQuery(LocalStore.Table table, LocalStore.SyncCursor cursor, String scope) throws Exception {
+        StringBuilder query = new StringBuilder("select=*&limit=").append(PAGE_SIZE);
+        if (scope != null) {
+            query.append('&').append(table.scopeColumn).append("=eq.").append(URLEncoder.encode(scope, "UTF-8"));
+        }
+        String column = table.watermarkColumn;
+        if (cursor.isBackfilling()) {
+            // First pull: everything, in stable id order. Rows with a null updated_at only show up here.
+            query.append("&order=id.asc");
+            if (cursor.backfillId != null) {
+                query.append("&id=gt.").append(URLEncoder.encode(cursor.backfillId, "UTF-8"));
+            }
+        } else {
+            // Keyset on (column, id): strictly after the last applied row, even within one timestamp
+            String filter = "(" + column + ".gt.\"" + cursor.watermark + "\",and(" + column + ".eq.\"" + cursor.watermark
+                + "\",id.gt.\"" + cursor.id + "\"))";
+            query.append("&order=").append(column).append(".asc,id.asc")
+                .append("&or=").append(URLEncoder.encode(filter, "UTF-8"));
+        }
+        return query.toString();
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,168 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU disk cache of JSON entities keyed by type and ID, used to open notification
+ * targets without waiting on the network.
+ */
+public final class EntityCache {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final String DIR_NAME = "entity_cache";
+    private static final long MAX_BYTES = 512 * 1024L;
+
+    private static volatile EntityCache instance;
+
+    private final File dir;
+    // Access-ordered index of file name to size; eldest entries are evicted first
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(32, 0.75f, true);
+    private long totalBytes;
+
+    private EntityCache(Context context) {
+        dir = new File(context.getCacheDir(), DIR_NAME);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create entity cache dir");
+        }
+        loadIndex();
+    }
+
+    public static EntityCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (EntityCache.class) {
+                if (instance == null) {
+                    instance = new EntityCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public synchronized void put(String type, String id, String json) {
+        String name = fileName(type, id);
+        byte[] bytes;
+        try {
+            bytes = json.getBytes("UTF-8");
+        } catch (IOException e) {
+            return;
+        }
+        if (bytes.length > MAX_BYTES) {
+            return;
+        }
+
+        File tmp = new File(dir, name + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(new File(dir, name))) {
+                throw new IOException("rename failed");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache " + name, e);
+            tmp.delete();
+            return;
+        }
+
+        Long previous = index.put(name, (long) bytes.length);
+        totalBytes += bytes.length - (previous != null ? previous : 0L);
+        trimToSize();
+    }
+
+    public synchronized String get(String type, String id) {
+        String name = fileName(type, id);
+        // get, not containsKey, so the hit counts as an access and moves to the young end
+        if (index.get(name) == null) {
+            return null;
+        }
+        File file = new File(dir, name);
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                byte[] data = new byte[(int) file.length()];
+                int offset = 0;
+                while (offset < data.length) {
+                    int read = in.read(data, offset, data.length - offset);
+                    if (read == -1) {
+                        break;
+                    }
+                    offset += read;
+                }
+                // Refresh recency across restarts, where the index is rebuilt from mtimes
+                file.setLastModified(System.currentTimeMillis());
+                return new String(data, 0, offset, "UTF-8");
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            remove(name);
+            return null;
+        }
+    }
+
+    public synchronized void clear() {
+        for (String name : index.keySet()) {
+            new File(dir, name).delete();
+        }
+        index.clear();
+        totalBytes = 0;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > MAX_BYTES && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(dir, eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private void remove(String name) {
+        Long size = index.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        new File(dir, name).delete();
+    }
+
+    private void loadIndex() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            index.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+        trimToSize();
+    }
+
+    private static String fileName(String type, String id) {
+        // IDs are UUIDs; anything else is reduced to a safe file name
+        return (type + "_" + id).replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
@@ -0,0 +1,174 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Turns a full-resolution camera image into an upload-sized JPEG on disk. The source is decoded
+ * with inSampleSize so the full bitmap is never allocated, and re-encoding drops all EXIF data
+ * (location, device) after the orientation has been applied to the pixels.
+ */
+final class ImageProcessor {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final int MIN_QUALITY = 50;
+    private static final int QUALITY_STEP = 10;
+
+    static final class Result {
+        final File file;
+        final int width;
+        final int height;
+
+        Result(File file, int width, int height) {
+            this.file = file;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private ImageProcessor() {
+    }
+
+    static Result process(Context context, String source, int maxDimension, int quality, long targetBytes)
+            throws IOException {
+        return process(context, ContentSources.parse(context, source), maxDimension, quality, targetBytes);
+    }
+
+    /** For callers that already trust the URI, such as the memory benchmark. */
+    static Result process(Context context, Uri uri, int maxDimension, int quality, long targetBytes)
+            throws IOException {
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        InputStream in = open(context, uri);
+        try {
+            BitmapFactory.decodeStream(in, null, bounds);
+        } finally {
+            in.close();
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + uri);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, maxDimension);
+        // Photos of meters and documents do not need an alpha channel; halves bitmap memory
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bitmap;
+        in = open(context, uri);
+        try {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (bitmap == null) {
+            throw new IOException("Failed to decode image: " + uri);
+        }
+
+        bitmap = scaleAndRotate(bitmap, maxDimension, readRotation(context, uri));
+
+        File output = File.createTempFile("upload_", ".jpg", context.getCacheDir());
+        int currentQuality = quality;
+        try {
+            while (true) {
+                writeJpeg(bitmap, currentQuality, output);
+                if (targetBytes <= 0 || output.length() <= targetBytes || currentQuality <= MIN_QUALITY) {
+                    break;
+                }
+                currentQuality = Math.max(MIN_QUALITY, currentQuality - QUALITY_STEP);
+            }
+            Log.d(TAG, "Processed image " + bounds.outWidth + "x" + bounds.outHeight + " -> "
+                + bitmap.getWidth() + "x" + bitmap.getHeight() + " q" + currentQuality + ", " + output.length() + " bytes");
+            return new Result(output, bitmap.getWidth(), bitmap.getHeight());
+        } catch (IOException e) {
+            output.delete();
+            throw e;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    static int sampleSize(int width, int height, int maxDimension) {
+        int sampleSize = 1;
+        // Largest power of two that keeps the longer edge at or above the requested size
+        while (Math.max(width, height) / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap scaleAndRotate(Bitmap bitmap, int maxDimension, int rotation) {
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        float scale = longest > maxDimension ? (float) maxDimension / longest : 1f;
+        if (scale == 1f && rotation == 0) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postScale(scale, scale);
+        matrix.postRotate(rotation);
+        Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (transformed != bitmap) {
+            bitmap.recycle();
+        }
+        return transformed;
+    }
+
+    private static int readRotation(Context context, Uri uri) {
+        try {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+                // Reading EXIF from a stream needs API 24
+                return 0;
+            }
+            ExifInterface exif;
+            InputStream in = open(context, uri);
+            try {
+                exif = new ExifInterface(in);
+            } finally {
+                in.close();
+            }
+            switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read image orientation", e);
+            return 0;
+        }
+    }
+
+    private static void writeJpeg(Bitmap bitmap, int quality, File output) throws IOException {
+        OutputStream out = new FileOutputStream(output);
+        try {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("JPEG compression failed");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static InputStream open(Context context, Uri uri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return in;
+    }
+}
@@ -0,0 +1,122 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Downscales, recompresses and streams an image to Supabase Storage entirely in native code. JS
+ * gets back a handle immediately and follows the upload through imageUpload* window events.
+ */
+public final class ImageUploader {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final int DEFAULT_MAX_DIMENSION = 1600;
+    private static final int DEFAULT_QUALITY = 80;
+    private static final int PROGRESS_STEP_PERCENT = 5;
+
+    private ImageUploader() {
+    }
+
+    /**
+     * Runs on the shared media lane, owned by the calling activity: the page waiting on the events
+     * goes away with it, so its queued and running uploads are cancelled when it finishes.
+     */
+    public static String start(Context context, String source, String bucket, String objectPath,
+                               int maxDimension, int quality, int targetKb) {
+        final Context appContext = context.getApplicationContext();
+        final String handle = UUID.randomUUID().toString();
+        final int dimension = maxDimension > 0 ? maxDimension : DEFAULT_MAX_DIMENSION;
+        final int jpegQuality = quality > 0 && quality <= 100 ? quality : DEFAULT_QUALITY;
+        final long targetBytes = targetKb > 0 ? targetKb * 1024L : 0L;
+
+        if (NetworkExecutor.getInstance().submitMedia(context, "image-upload", () -> {
+            ImageProcessor.Result result = null;
+            try {
+                result = ImageProcessor.process(appContext, source, dimension, jpegQuality, targetBytes);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Cancelled before upload");
+                }
+
+                String accessToken = SessionState.getInstance(appContext).get().accessToken;
+                Map<String, String> headers = new HashMap<>();
+                headers.put("apikey", NativeHttpClient.SUPABASE_ANON_KEY);
+                headers.put("Authorization", "Bearer " + (accessToken != null ? accessToken : NativeHttpClient.SUPABASE_ANON_KEY));
+                headers.put("x-upsert", "false");
+
+                final int[] lastPercent = {-PROGRESS_STEP_PERCENT};
+                NativeHttpClient.Response response = NativeHttpClient.getInstance().upload(
+                    BuildConfig.SUPABASE_API_URL + "/storage/v1/object/" + encodePath(bucket + "/" + objectPath),
+                    headers,
+                    result.file,
+                    "image/jpeg",
+                    (sent, total) -> {
+                        int percent = total > 0 ? (int) (sent * 100 / total) : 0;
+                        if (percent - lastPercent[0] >= PROGRESS_STEP_PERCENT || sent == total) {
+                            lastPercent[0] = percent;
+                            dispatch("imageUploadProgress", handle, "percent", percent);
+                        }
+                    });
+
+                if (!response.isSuccessful()) {
+                    throw new IOException("Storage upload failed with " + response.code + ": " + response.body);
+                }
+
+                JSONObject detail = new JSONObject();
+                detail.put("handle", handle);
+                detail.put("bucket", bucket);
+                detail.put("path", objectPath);
+                detail.put("bytes", result.file.length());
+                detail.put("width", result.width);
+                detail.put("height", result.height);
+                WebEventBridge.getInstance().dispatch("imageUploadComplete", detail);
+            } catch (Exception e) {
+                Log.e(TAG, "Image upload " + handle + " failed", e);
+                dispatch("imageUploadFailed", handle, "error", e.getMessage());
+            } finally {
+                if (result != null) {
+                    result.file.delete();
+                }
+            }
+        }) == null) {
+            dispatch("imageUploadFailed", handle, "error", "Too many uploads queued");
+        }
+        return handle;
+    }
+
+    /**
+     * Percent-encodes each segment so names with spaces, '?' or '#' stay part of the object path
+     * and dot segments cannot climb out of the bucket.
+     */
+    static String encodePath(String path) throws IOException {
+        StringBuilder encoded = new StringBuilder(path.length() + 16);
+        for (String segment : path.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                throw new IOException("Invalid storage path: " + path);
+            }
+            if (encoded.length() > 0) {
+                encoded.append('/');
+            }
+            encoded.append(Uri.encode(segment));
+        }
+        return encoded.toString();
+    }
+
+    private static void dispatch(String event, String handle, String key, Object value) {
+        try {
+            JSONObject detail = new JSONObject();
+            detail.put("handle", handle);
+            detail.put(key, value);
+            WebEventBridge.getInstance().dispatch(event, detail);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not dispatch " + event, e);
+        }
+    }
+}
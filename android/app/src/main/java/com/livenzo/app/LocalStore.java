@@ -0,0 +1,483 @@
+package com.livenzo.app;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline copy of the rows screens render most: rooms, renters, payments and notices. Each row is
+ * kept whole as JSON next to the handful of columns screens filter and sort on, which are indexed.
+ * A per-table cursor (the newest updated_at applied by sync) lets sync ask only for newer rows.
+ */
+public final class LocalStore extends SQLiteOpenHelper {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final String DATABASE_NAME = "livenzo_local.db";
+    private static final int DATABASE_VERSION = 4;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 500;
+
+    static final class Table {
+        final String name;
+        // Server column used as the sync watermark; falls back to created_at when null
+        final String watermarkColumn;
+        // Column holding the signed-in user's id, for tables synced only for their owner
+        String scopeColumn;
+        // Column name -> SQLite type, for filterable/sortable columns
+        final Map<String, String> columns = new LinkedHashMap<>();
+        final List<String> indexes = new ArrayList<>();
+
+        Table(String name, String watermarkColumn) {
+            this.name = name;
+            this.watermarkColumn = watermarkColumn;
+        }
+
+        Table scope(String column) {
+            scopeColumn = column;
+            return this;
+        }
+
+        Table column(String column, String type) {
+            columns.put(column, type);
+            return this;
+        }
+
+        Table index(String... indexColumns) {
+            StringBuilder joined = new StringBuilder();
+            for (String column : indexColumns) {
+                if (joined.length() > 0) {
+                    joined.append(", ");
+                }
+                joined.append(column);
+            }
+            indexes.add(joined.toString());
+            return this;
+        }
+    }
+
+    static final Map<String, Table> TABLES = new LinkedHashMap<>();
+
+    static {
+        register(new Table("rooms", "updated_at")
+            .scope("owner_id")
+            .column("owner_id", "TEXT")
+            .column("property_id", "TEXT")
+            .column("available", "INTEGER")
+            .column("price", "REAL")
+            .column("created_at", "TEXT")
+            .index("owner_id")
+            .index("property_id")
+            .index("available", "price"));
+        register(new Table("renters", "updated_at")
+            .column("property_id", "TEXT")
+            .column("user_id", "TEXT")
+            .column("status", "TEXT")
+            .column("created_at", "TEXT")
+            .index("property_id", "status")
+            .index("user_id"));
+        register(new Table("payments", "updated_at")
+            .column("renter_id", "TEXT")
+            .column("owner_id", "TEXT")
+            .column("relationship_id", "TEXT")
+            .column("payment_status", "TEXT")
+            .column("payment_date", "TEXT")
+            .column("billing_month", "TEXT")
+            .index("renter_id", "payment_date")
+            .index("owner_id", "payment_date")
+            .index("relationship_id"));
+        register(new Table("notices", "updated_at")
+            .column("owner_id", "TEXT")
+            .column("renter_id", "TEXT")
+            .column("property_id", "TEXT")
+            .column("archived", "INTEGER")
+            .column("created_at", "TEXT")
+            .index("renter_id", "created_at")
+            .index("owner_id", "created_at"));
+    }
+
+    private static void register(Table table) {
+        TABLES.put(table.name, table);
+    }
+
+    private static volatile LocalStore instance;
+
+    private LocalStore(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /** Tests pass a null name for an in-memory database. */
+    LocalStore(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        // Readers (bridge queries) don't block behind sync writes
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    public static LocalStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LocalStore.class) {
+                if (instance == null) {
+                    instance = new LocalStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        for (Table table : TABLES.values()) {
+            StringBuilder sql = new StringBuilder("CREATE TABLE ").append(table.name)
+                .append(" (id TEXT PRIMARY KEY, watermark TEXT");
+            for (Map.Entry<String, String> column : table.columns.entrySet()) {
+                sql.append(", ").append(column.getKey()).append(' ').append(column.getValue());
+            }
+            sql.append(", data TEXT NOT NULL)");
+            db.execSQL(sql.toString());
+            for (int i = 0; i < table.indexes.size(); i++) {
+                db.execSQL("CREATE INDEX idx_" + table.name + "_" + i + " ON " + table.name + " (" + table.indexes.get(i) + ")");
+            }
+        }
+        db.execSQL("CREATE TABLE sync_state (table_name TEXT PRIMARY KEY, watermark TEXT, cursor_id TEXT,"
+            + " backfill_id TEXT, backfill_mark TEXT, backfill_mark_id TEXT, scope TEXT, synced_at INTEGER)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // A cache only; rebuild and let sync refill it
+        for (String name : TABLES.keySet()) {
+            db.execSQL("DROP TABLE IF EXISTS " + name);
+        }
+        db.execSQL("DROP TABLE IF EXISTS sync_state");
+        onCreate(db);
+    }
+
+    /**
+     * Per-table sync position: the (watermark, id) of the last row applied, compared as a tuple so
+     * paging stays exact when many rows share one updated_at. While the first pull is unfinished,
+     * backfillId is the last id it reached and backfillMark/backfillMarkId the newest (watermark,
+     * id) on the server when it started; scope is the user the rows were pulled for.
+     */
+    public static final class SyncCursor {
+        public final String watermark;
+        public final String id;
+        public final String backfillId;
+        public final String backfillMark;
+        public final String backfillMarkId;
+        public final String scope;
+        public final long syncedAt;
+
+        SyncCursor(String watermark, String id, String backfillId, String backfillMark, String backfillMarkId,
+                   String scope, long syncedAt) {
+            this.watermark = watermark;
+            this.id = id;
+            this.backfillId = backfillId;
+            this.backfillMark = backfillMark;
+            this.backfillMarkId = backfillMarkId;
+            this.scope = scope;
+            this.syncedAt = syncedAt;
+        }
+
+        /** True until a first pull has run to the end. */
+        public boolean isBackfilling() {
+            return watermark == null || backfillId != null;
+        }
+
+        boolean isBefore(String otherWatermark, String otherId) {
+            if (watermark == null) {
+                return true;
+            }
+            int byWatermark = otherWatermark.compareTo(watermark);
+            return byWatermark > 0 || (byWatermark == 0 && id != null && otherId.compareTo(id) > 0);
+        }
+    }
+
+    /**
+     * Inserts or replaces rows the web layer fetched itself. The sync cursor is left alone: those
+     * fetches are usually filtered, so they say nothing about what else changed server-side.
+     */
+    public int upsert(String tableName, JSONArray rows) throws Exception {
+        Table table = requireTable(tableName);
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            int written = 0;
+            for (int i = 0; i < rows.length(); i++) {
+                if (writeRow(db, table, rows.getJSONObject(i)) != null) {
+                    written++;
+                }
+            }
+            db.setTransactionSuccessful();
+            return written;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Records the newest (watermark, id) on the server as a first pull starts. Pages of that pull
+     * come in id order, so the newest row seen across them says nothing about rows on earlier pages
+     * edited meanwhile; the cursor jumps to this mark instead once the pull ends, and the next delta
+     * picks those edits up. A null mark (nothing on the server yet) leaves the table to pull again.
+     */
+    public void startBackfill(String tableName, String mark, String markId, String scope) {
+        Table table = requireTable(tableName);
+        getWritableDatabase().execSQL("INSERT OR REPLACE INTO sync_state (table_name, watermark, cursor_id, backfill_id,"
+                + " backfill_mark, backfill_mark_id, scope, synced_at) VALUES (?, NULL, NULL, NULL, ?, ?, ?, 0)",
+            new Object[]{table.name, mark, markId, scope});
+    }
+
+    /**
+     * Applies one page pulled by the sync engine and advances the cursor in one transaction, so a
+     * crash never leaves the cursor ahead of the rows. backfillId is where an unfinished first pull
+     * resumes, or null once it has reached the end. Returns the number of rows written.
+     */
+    public int applyDelta(String tableName, JSONArray page, String backfillId, String scope) throws Exception {
+        Table table = requireTable(tableName);
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SyncCursor cursor = getCursor(db, table.name);
+            boolean backfilling = cursor.isBackfilling();
+            String newestWatermark = cursor.watermark;
+            String newestId = cursor.id;
+            int written = 0;
+            for (int i = 0; i < page.length(); i++) {
+                JSONObject row = page.getJSONObject(i);
+                String id = writeRow(db, table, row);
+                if (id == null) {
+                    continue;
+                }
+                written++;
+                String watermark = watermarkOf(table, row);
+                // PostgREST timestamps share one format, so string order is time order
+                if (!backfilling && watermark != null
+                        && new SyncCursor(newestWatermark, newestId, null, null, null, null, 0L).isBefore(watermark, id)) {
+                    newestWatermark = watermark;
+                    newestId = id;
+                }
+            }
+            String mark = cursor.backfillMark;
+            String markId = cursor.backfillMarkId;
+            if (backfilling && backfillId == null) {
+                // First pull done: resume deltas from where the server stood when it started
+                newestWatermark = mark;
+                newestId = markId;
+                mark = null;
+                markId = null;
+            }
+            db.execSQL("INSERT OR REPLACE INTO sync_state (table_name, watermark, cursor_id, backfill_id, backfill_mark,"
+                    + " backfill_mark_id, scope, synced_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                new Object[]{table.name, newestWatermark, newestId, backfillId, mark, markId, scope,
+                    System.currentTimeMillis()});
+            db.setTransactionSuccessful();
+            return written;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes synced rows whose id the server no longer returns (deleted, or moved out of scope).
+     * Returns the number of rows removed.
+     */
+    public int retainOnly(String tableName, Set<String> ids) {
+        Table table = requireTable(tableName);
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            List<String> stale = new ArrayList<>();
+            Cursor cursor = db.rawQuery("SELECT id FROM " + table.name, null);
+            try {
+                while (cursor.moveToNext()) {
+                    if (!ids.contains(cursor.getString(0))) {
+                        stale.add(cursor.getString(0));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            for (String id : stale) {
+                db.delete(table.name, "id = ?", new String[]{id});
+            }
+            db.setTransactionSuccessful();
+            return stale.size();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Drops a table's rows and cursor, e.g. when it was pulled for another user. */
+    public void resetTable(String tableName) {
+        Table table = requireTable(tableName);
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(table.name, null, null);
+            db.delete("sync_state", "table_name = ?", new String[]{table.name});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private String writeRow(SQLiteDatabase db, Table table, JSONObject row) {
+        // isNull first: Android's optString turns a JSON null into "null"
+        String id = row.isNull("id") ? null : row.optString("id", null);
+        if (id == null) {
+            return null;
+        }
+        ContentValues values = new ContentValues();
+        values.put("id", id);
+        values.put("watermark", watermarkOf(table, row));
+        for (String column : table.columns.keySet()) {
+            putColumn(values, column, row.opt(column));
+        }
+        values.put("data", row.toString());
+        db.insertWithOnConflict(table.name, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        return id;
+    }
+
+    /**
+     * Returns matching rows as a JSON array string. Filters are equality matches on indexed
+     * columns; orderBy is "column" or "column.desc".
+     */
+    public String query(String tableName, JSONObject filters, String orderBy, int limit) {
+        Table table = requireTable(tableName);
+        StringBuilder sql = new StringBuilder("SELECT data FROM ").append(table.name);
+        List<String> args = new ArrayList<>();
+        if (filters != null && filters.length() > 0) {
+            String separator = " WHERE ";
+            Iterator<String> keys = filters.keys();
+            while (keys.hasNext()) {
+                String column = keys.next();
+                requireColumn(table, column);
+                Object value = filters.opt(column);
+                sql.append(separator).append(column);
+                if (value == null || value == JSONObject.NULL) {
+                    sql.append(" IS NULL");
+                } else {
+                    sql.append(" = ?");
+                    args.add(value instanceof Boolean ? ((Boolean) value ? "1" : "0") : value.toString());
+                }
+                separator = " AND ";
+            }
+        }
+        if (orderBy != null && !orderBy.isEmpty()) {
+            boolean descending = orderBy.endsWith(".desc");
+            String column = orderBy.replace(".desc", "").replace(".asc", "");
+            requireColumn(table, column);
+            sql.append(" ORDER BY ").append(column).append(descending ? " DESC" : " ASC");
+        }
+        int boundedLimit = limit > 0 ? Math.min(limit, MAX_LIMIT) : DEFAULT_LIMIT;
+        sql.append(" LIMIT ").append(boundedLimit);
+
+        Cursor cursor = getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0]));
+        try {
+            // Rows are stored as JSON already, so the result is spliced rather than re-parsed
+            StringBuilder json = new StringBuilder(cursor.getCount() * 256 + 2).append('[');
+            boolean first = true;
+            while (cursor.moveToNext()) {
+                if (!first) {
+                    json.append(',');
+                }
+                json.append(cursor.getString(0));
+                first = false;
+            }
+            return json.append(']').toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public String getWatermark(String tableName) {
+        return getCursor(tableName).watermark;
+    }
+
+    public SyncCursor getCursor(String tableName) {
+        return getCursor(getReadableDatabase(), requireTable(tableName).name);
+    }
+
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String name : TABLES.keySet()) {
+                db.delete(name, null, null);
+            }
+            db.delete("sync_state", null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Local store cleared");
+    }
+
+    static Table requireTable(String tableName) {
+        Table table = TABLES.get(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown local table: " + tableName);
+        }
+        return table;
+    }
+
+    private static void requireColumn(Table table, String column) {
+        // Column names are spliced into SQL, so only declared ones are allowed
+        if (!table.columns.containsKey(column) && !"id".equals(column) && !"watermark".equals(column)) {
+            throw new IllegalArgumentException("Column " + column + " is not queryable on " + table.name);
+        }
+    }
+
+    private static SyncCursor getCursor(SQLiteDatabase db, String tableName) {
+        Cursor cursor = db.rawQuery("SELECT watermark, cursor_id, backfill_id, backfill_mark, backfill_mark_id, scope,"
+            + " synced_at FROM sync_state WHERE table_name = ?", new String[]{tableName});
+        try {
+            if (!cursor.moveToNext()) {
+                return new SyncCursor(null, null, null, null, null, null, 0L);
+            }
+            return new SyncCursor(
+                cursor.isNull(0) ? null : cursor.getString(0),
+                cursor.isNull(1) ? null : cursor.getString(1),
+                cursor.isNull(2) ? null : cursor.getString(2),
+                cursor.isNull(3) ? null : cursor.getString(3),
+                cursor.isNull(4) ? null : cursor.getString(4),
+                cursor.isNull(5) ? null : cursor.getString(5),
+                cursor.getLong(6));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static String watermarkOf(Table table, JSONObject row) {
+        String watermark = row.isNull(table.watermarkColumn) ? null : row.optString(table.watermarkColumn, null);
+        if (watermark == null && !row.isNull("created_at")) {
+            watermark = row.optString("created_at", null);
+        }
+        return watermark;
+    }
+
+    private static void putColumn(ContentValues values, String column, Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            values.putNull(column);
+        } else if (value instanceof Boolean) {
+            values.put(column, (Boolean) value ? 1 : 0);
+        } else if (value instanceof Integer || value instanceof Long) {
+            values.put(column, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            values.put(column, ((Number) value).doubleValue());
+        } else {
+            values.put(column, value.toString());
+        }
+    }
+}
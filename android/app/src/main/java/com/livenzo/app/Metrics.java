@@ -0,0 +1,333 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide metrics registry. Metrics are registered once (typically as static finals) and
+ * recording only touches atomics, so hot paths do not allocate.
+ */
+public final class Metrics {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final String DAILY_PREFS = "livenzo_metrics";
+    private static final String RESULTS_FILE = "perf_results.json";
+    private static final int DAILY_RETENTION_DAYS = 7;
+
+    public static final long[] LATENCY_BUCKETS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+    // For in-process work such as JSON building, where milliseconds are too coarse
+    public static final long[] DURATION_BUCKETS_US = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 50000};
+
+    private static final Map<String, Counter> counters = new LinkedHashMap<>();
+    private static final Map<String, Gauge> gauges = new LinkedHashMap<>();
+    private static final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private static final long startedAt = System.currentTimeMillis();
+    // Guards the daily prefs read-modify-write and the cached day key
+    private static final Object dailyLock = new Object();
+    private static String currentDay;
+    private static long currentDayStartsAt;
+    private static long currentDayEndsAt;
+    private static final AtomicInteger scenarioCookies = new AtomicInteger();
+
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    public static final class Histogram {
+        private final long[] bounds;
+        // One slot per bound plus an overflow slot
+        private final AtomicLongArray buckets;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(long[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void record(long value) {
+            int index = 0;
+            while (index < bounds.length && value > bounds[index]) {
+                index++;
+            }
+            buckets.incrementAndGet(index);
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long currentMax;
+            while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+                // retry
+            }
+        }
+
+        public long count() {
+            return count.get();
+        }
+
+        /**
+         * Upper bound of the bucket containing the given percentile (0-100); max for the overflow bucket.
+         */
+        public long percentile(double percentile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(total * percentile / 100.0);
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                cumulative += buckets.get(i);
+                if (cumulative >= threshold) {
+                    return i < bounds.length ? bounds[i] : max.get();
+                }
+            }
+            return max.get();
+        }
+
+        JSONObject toJson() throws Exception {
+            JSONObject json = new JSONObject();
+            json.put("count", count.get());
+            json.put("sum", sum.get());
+            json.put("max", max.get());
+            json.put("p50", percentile(50));
+            json.put("p95", percentile(95));
+            json.put("p99", percentile(99));
+            JSONArray boundsJson = new JSONArray();
+            for (long bound : bounds) {
+                boundsJson.put(bound);
+            }
+            JSONArray bucketsJson = new JSONArray();
+            for (int i = 0; i < buckets.length(); i++) {
+                bucketsJson.put(buckets.get(i));
+            }
+            json.put("bounds", boundsJson);
+            json.put("buckets", bucketsJson);
+            return json;
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        synchronized (counters) {
+            Counter counter = counters.get(name);
+            if (counter == null) {
+                counter = new Counter();
+                counters.put(name, counter);
+            }
+            return counter;
+        }
+    }
+
+    public static Gauge gauge(String name) {
+        synchronized (gauges) {
+            Gauge gauge = gauges.get(name);
+            if (gauge == null) {
+                gauge = new Gauge();
+                gauges.put(name, gauge);
+            }
+            return gauge;
+        }
+    }
+
+    public static Histogram histogram(String name, long[] bounds) {
+        synchronized (histograms) {
+            Histogram histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new Histogram(bounds);
+                histograms.put(name, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Bumps a per-day counter kept in SharedPreferences, for counts that must survive the process
+     * (e.g. pushes received while the app was never opened).
+     */
+    public static void incrementDaily(Context context, String name) {
+        SharedPreferences prefs = context.getSharedPreferences(DAILY_PREFS, Context.MODE_PRIVATE);
+        synchronized (dailyLock) {
+            String key = name + "@" + today();
+            prefs.edit().putLong(key, prefs.getLong(key, 0L) + 1).apply();
+        }
+    }
+
+    public static String snapshotJson(Context context) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("process_started_at", startedAt);
+            json.put("captured_at", System.currentTimeMillis());
+
+            JSONObject countersJson = new JSONObject();
+            synchronized (counters) {
+                for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                    countersJson.put(entry.getKey(), entry.getValue().get());
+                }
+            }
+            json.put("counters", countersJson);
+
+            JSONObject gaugesJson = new JSONObject();
+            synchronized (gauges) {
+                for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+                    gaugesJson.put(entry.getKey(), entry.getValue().get());
+                }
+            }
+            json.put("gauges", gaugesJson);
+
+            JSONObject histogramsJson = new JSONObject();
+            synchronized (histograms) {
+                for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                    histogramsJson.put(entry.getKey(), entry.getValue().toJson());
+                }
+            }
+            json.put("histograms", histogramsJson);
+
+            json.put("startup", new JSONObject(StartupTrace.toJson()));
+            json.put("daily", dailyJson(context));
+            return json.toString();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to build metrics snapshot", e);
+            return "{}";
+        }
+    }
+
+    /**
+     * Writes the current snapshot to perf_results.json in the app's external files directory on
+     * the background lane, so benchmark runs can adb pull it and compare across releases. Only
+     * debug and benchmark builds write it.
+     */
+    public static void writeResults(Context context) {
+        if (!BuildConfig.PERF_RESULTS) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        NetworkExecutor.getInstance().submitBackground(null, "perf-results", () -> {
+            File dir = appContext.getExternalFilesDir(null);
+            File file = new File(dir != null ? dir : appContext.getFilesDir(), RESULTS_FILE);
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                FileOutputStream out = new FileOutputStream(tmp);
+                try {
+                    out.write(snapshotJson(appContext).getBytes("UTF-8"));
+                } finally {
+                    out.close();
+                }
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("rename failed");
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to write perf results", e);
+                tmp.delete();
+            }
+        });
+    }
+
+    /**
+     * Opens an async trace section for a scenario that finishes on another thread, so
+     * macrobenchmarks can time it with TraceSectionMetric. Pass the cookie to endScenario.
+     */
+    public static int beginScenario(String name) {
+        int cookie = scenarioCookies.incrementAndGet();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+        return cookie;
+    }
+
+    public static void endScenario(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    private static JSONObject dailyJson(Context context) throws Exception {
+        SharedPreferences prefs = context.getSharedPreferences(DAILY_PREFS, Context.MODE_PRIVATE);
+        String cutoff = dayString(System.currentTimeMillis() - DAILY_RETENTION_DAYS * 24L * 60 * 60 * 1000);
+        JSONObject json = new JSONObject();
+        SharedPreferences.Editor editor = null;
+        synchronized (dailyLock) {
+            for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                String key = entry.getKey();
+                int at = key.lastIndexOf('@');
+                if (at > 0 && key.substring(at + 1).compareTo(cutoff) < 0) {
+                    // Drop days older than the retention window
+                    if (editor == null) {
+                        editor = prefs.edit();
+                    }
+                    editor.remove(key);
+                } else {
+                    json.put(key, entry.getValue());
+                }
+            }
+            if (editor != null) {
+                editor.apply();
+            }
+        }
+        return json;
+    }
+
+    /** Today's key, formatted again only when the local day changes. Call with dailyLock held. */
+    private static String today() {
+        long now = System.currentTimeMillis();
+        if (currentDay == null || now < currentDayStartsAt || now >= currentDayEndsAt) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            currentDayStartsAt = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            currentDayEndsAt = calendar.getTimeInMillis();
+            currentDay = dayString(now);
+        }
+        return currentDay;
+    }
+
+    private static String dayString(long timeMillis) {
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date(timeMillis));
+    }
+}
@@ -0,0 +1,243 @@
+package com.livenzo.app;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The shared, bounded executor for native network work. A few components keep their own threads
+ * on purpose: UploadManager's transfers run for minutes and would starve these lanes, and the
+ * realtime socket needs a scheduler for heartbeats and a reader that blocks for the socket's life.
+ */
+public final class NetworkExecutor {
+    private static final String TAG = "LIVENZO_NET";
+    private static final int POOL_SIZE = 2;
+    private static final int MAX_QUEUED_TASKS = 32;
+    private static final int MAX_QUEUED_BACKGROUND_TASKS = 16;
+    private static final int MAX_QUEUED_MEDIA_TASKS = 8;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static final Metrics.Histogram WAIT_MS = Metrics.histogram("net.task_wait_ms", Metrics.LATENCY_BUCKETS_MS);
+    private static final Metrics.Histogram RUN_MS = Metrics.histogram("net.task_run_ms", Metrics.LATENCY_BUCKETS_MS);
+    private static final Metrics.Counter REJECTED = Metrics.counter("net.tasks_rejected");
+    private static final Metrics.Counter BACKGROUND_REJECTED = Metrics.counter("net.background_tasks_rejected");
+    private static final Metrics.Counter MEDIA_REJECTED = Metrics.counter("net.media_tasks_rejected");
+    private static final Metrics.Gauge QUEUE_DEPTH = Metrics.gauge("net.queue_depth");
+    private static final Metrics.Gauge BACKGROUND_QUEUE_DEPTH = Metrics.gauge("net.background_queue_depth");
+    private static final Metrics.Gauge MEDIA_QUEUE_DEPTH = Metrics.gauge("net.media_queue_depth");
+
+    private static volatile NetworkExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+    // Long-running sync work (delta pulls, outbox drains) has its own lane so it never holds up
+    // login sync; it is bounded like the main lane so a backlog of drains and pulls can't pile up
+    private final ThreadPoolExecutor backgroundExecutor;
+    // Image decode and upload, one at a time so two full-size decodes never share the heap
+    private final ThreadPoolExecutor mediaExecutor;
+    // Tasks are tracked per owner (usually the activity) so they can be cancelled when it goes away
+    private final Map<Object, Set<Future<?>>> tasksByOwner = new WeakHashMap<>();
+
+    private NetworkExecutor() {
+        executor = new ThreadPoolExecutor(
+            POOL_SIZE,
+            POOL_SIZE,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_TASKS),
+            new NamedThreadFactory("livenzo-net-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        backgroundExecutor = new ThreadPoolExecutor(
+            1,
+            1,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_BACKGROUND_TASKS),
+            new NamedThreadFactory("livenzo-net-bg-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        backgroundExecutor.allowCoreThreadTimeOut(true);
+        mediaExecutor = new ThreadPoolExecutor(
+            1,
+            1,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_MEDIA_TASKS),
+            new NamedThreadFactory("livenzo-media-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        mediaExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static NetworkExecutor getInstance() {
+        if (instance == null) {
+            synchronized (NetworkExecutor.class) {
+                if (instance == null) {
+                    instance = new NetworkExecutor();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a network task. Returns null when the queue is full so the caller can report the failure.
+     */
+    public Future<?> submit(Object owner, String name, Runnable task) {
+        return submit(executor, QUEUE_DEPTH, REJECTED, owner, name, task);
+    }
+
+    /**
+     * Queues bulk work that may run for a long time on the background lane. Returns null when
+     * that lane's queue is full; callers retry on their next trigger.
+     */
+    public Future<?> submitBackground(Object owner, String name, Runnable task) {
+        return submit(backgroundExecutor, BACKGROUND_QUEUE_DEPTH, BACKGROUND_REJECTED, owner, name, task);
+    }
+
+    /**
+     * Queues an image decode and upload on the media lane. Returns null when that lane's queue is full.
+     */
+    public Future<?> submitMedia(Object owner, String name, Runnable task) {
+        return submit(mediaExecutor, MEDIA_QUEUE_DEPTH, MEDIA_REJECTED, owner, name, task);
+    }
+
+    private Future<?> submit(ThreadPoolExecutor lane, Metrics.Gauge queueDepth, Metrics.Counter rejected,
+                             Object owner, String name, Runnable task) {
+        TimedTask timedTask = new TimedTask(lane, queueDepth, owner, name, task);
+        if (owner != null) {
+            synchronized (tasksByOwner) {
+                Set<Future<?>> tasks = tasksByOwner.get(owner);
+                if (tasks == null) {
+                    tasks = new HashSet<>();
+                    tasksByOwner.put(owner, tasks);
+                }
+                tasks.add(timedTask);
+            }
+        }
+
+        try {
+            lane.execute(timedTask);
+            queueDepth.set(lane.getQueue().size());
+            return timedTask;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            untrack(owner, timedTask);
+            Log.w(TAG, "Queue full, dropping task: " + name);
+            return null;
+        }
+    }
+
+    public void cancelAll(Object owner) {
+        Set<Future<?>> tasks;
+        synchronized (tasksByOwner) {
+            tasks = tasksByOwner.remove(owner);
+        }
+        if (tasks == null) {
+            return;
+        }
+        for (Future<?> task : tasks) {
+            task.cancel(true);
+        }
+        executor.purge();
+        backgroundExecutor.purge();
+        mediaExecutor.purge();
+        Log.d(TAG, "Cancelled " + tasks.size() + " pending network task(s)");
+    }
+
+    private void untrack(Object owner, Future<?> task) {
+        if (owner == null) {
+            return;
+        }
+        synchronized (tasksByOwner) {
+            Set<Future<?>> tasks = tasksByOwner.get(owner);
+            if (tasks != null) {
+                tasks.remove(task);
+                if (tasks.isEmpty()) {
+                    tasksByOwner.remove(owner);
+                }
+            }
+        }
+    }
+
+    private final class TimedTask extends FutureTask<Void> {
+        private final ThreadPoolExecutor lane;
+        private final Metrics.Gauge queueDepth;
+        private final String name;
+        private final long enqueuedAt;
+        // Weakly held so a queued task never keeps a destroyed activity alive
+        private final WeakReference<Object> ownerRef;
+
+        TimedTask(ThreadPoolExecutor lane, Metrics.Gauge queueDepth, Object owner, String name, Runnable task) {
+            super(task, null);
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.name = name;
+            this.enqueuedAt = SystemClock.elapsedRealtime();
+            this.ownerRef = new WeakReference<>(owner);
+        }
+
+        @Override
+        public void run() {
+            long startedAt = SystemClock.elapsedRealtime();
+            queueDepth.set(lane.getQueue().size());
+            super.run();
+            long finishedAt = SystemClock.elapsedRealtime();
+
+            if (!isCancelled()) {
+                long runMillis = finishedAt - startedAt;
+                WAIT_MS.record(startedAt - enqueuedAt);
+                RUN_MS.record(runMillis);
+                Log.d(TAG, "Task " + name + " waited " + (startedAt - enqueuedAt) + "ms, ran " + runMillis + "ms");
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                Log.d(TAG, "Task " + name + " cancelled");
+            } else {
+                try {
+                    get();
+                } catch (Exception e) {
+                    Log.e(TAG, "Task " + name + " failed", e);
+                }
+            }
+            untrack(ownerRef.get(), this);
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger(1);
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, prefix + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
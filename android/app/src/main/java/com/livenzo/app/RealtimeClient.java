@@ -0,0 +1,378 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Native Supabase Realtime subscription to the signed-in user's incoming chat messages and
+ * notices, kept open only while the activity is in the foreground. Inserts reach the page as
+ * realtimeInsert events without the FCM round trip, and pushes for the chat currently on screen
+ * are suppressed.
+ */
+public final class RealtimeClient {
+    private static final String TAG = "LIVENZO_NET";
+    private static final String TOPIC = "realtime:livenzo-native";
+    private static final long HEARTBEAT_INTERVAL_MS = 25_000L;
+    private static final long MIN_BACKOFF_MS = 1_000L;
+    private static final long MAX_BACKOFF_MS = 30_000L;
+
+    private static final Metrics.Histogram CONNECT_MS = Metrics.histogram("realtime.connect_ms", Metrics.LATENCY_BUCKETS_MS);
+    private static final Metrics.Histogram HANDLE_US = Metrics.histogram("realtime.insert_handle_us", Metrics.DURATION_BUCKETS_US);
+    private static final Metrics.Counter INSERTS_RECEIVED = Metrics.counter("realtime.inserts_received");
+    private static final Metrics.Counter RECONNECTS = Metrics.counter("realtime.reconnects");
+    private static final Metrics.Counter PUSHES_SUPPRESSED = Metrics.counter("push.suppressed_foreground");
+
+    private static volatile RealtimeClient instance;
+
+    private final String url;
+    private final Random jitter = new Random();
+    // All connection state is confined to this thread. Kept apart from NetworkExecutor, which has
+    // no scheduling, so heartbeats and reconnect backoff never wait behind queued requests
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "livenzo-realtime-ctl");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SessionState session;
+    private volatile boolean foreground;
+    private volatile String activeChatRoom;
+    // Set only once the server has acknowledged the join; until then inserts are not arriving
+    private volatile boolean joined;
+
+    private RealtimeSocket socket;
+    private ScheduledFuture<?> heartbeat;
+    private ScheduledFuture<?> reconnect;
+    private String pendingHeartbeatRef;
+    private String joinRef;
+    private String joinedToken;
+    private int ref;
+    private int attempt;
+
+    private RealtimeClient(Context context, String url) {
+        this(SessionState.getInstance(context), url);
+    }
+
+    /** Tests point this at a local WebSocket stand-in. */
+    RealtimeClient(SessionState session, String url) {
+        this.session = session;
+        this.url = url;
+        session.addListener((previous, current) -> {
+            if (!equals(previous.accessToken, current.accessToken)) {
+                executor.execute(this::onAccessTokenChanged);
+            }
+        });
+    }
+
+    public static RealtimeClient getInstance(Context context) {
+        if (instance == null) {
+            synchronized (RealtimeClient.class) {
+                if (instance == null) {
+                    String base = BuildConfig.SUPABASE_API_URL.replaceFirst("^http", "ws");
+                    instance = new RealtimeClient(context.getApplicationContext(),
+                        base + "/realtime/v1/websocket?apikey=" + NativeHttpClient.SUPABASE_ANON_KEY + "&vsn=1.0.0");
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Connects while the activity is visible and disconnects when it is not. */
+    public void setForeground(boolean foreground) {
+        this.foreground = foreground;
+        executor.execute(foreground ? this::connect : this::disconnect);
+    }
+
+    /** The chat room the page is showing, or null; pushes for it are dropped while in the foreground. */
+    public void setActiveChatRoom(String roomId) {
+        activeChatRoom = roomId != null && !roomId.isEmpty() ? roomId : null;
+    }
+
+    /**
+     * True when the push duplicates a chat message the user is already looking at. The page
+     * receives the message over realtime, so the notification would only be noise.
+     */
+    public boolean shouldSuppress(Map<String, String> data) {
+        String room = activeChatRoom;
+        // Without a confirmed join the message may never reach the page, so the push must stay
+        if (!foreground || !joined || room == null || !"chat_message".equals(data.get("type"))) {
+            return false;
+        }
+        if (!room.equals(data.get("room_id"))) {
+            return false;
+        }
+        PUSHES_SUPPRESSED.increment();
+        return true;
+    }
+
+    private void connect() {
+        if (!foreground || socket != null) {
+            return;
+        }
+        cancel(reconnect);
+        reconnect = null;
+        String accessToken = session.get().accessToken;
+        String userId = subjectOf(accessToken);
+        if (userId == null) {
+            // Retried from onAccessTokenChanged once the web app hands over a session
+            Log.d(TAG, "No Supabase session, realtime not connected");
+            return;
+        }
+
+        long startedAt = SystemClock.elapsedRealtime();
+        final RealtimeSocket[] opened = new RealtimeSocket[1];
+        try {
+            opened[0] = RealtimeSocket.connect(url, new RealtimeSocket.Listener() {
+                @Override
+                public void onText(String text) {
+                    handleMessage(text);
+                }
+
+                @Override
+                public void onClosed(Exception cause) {
+                    executor.execute(() -> onSocketClosed(opened[0], cause));
+                }
+            });
+        } catch (Exception e) {
+            Log.w(TAG, "Realtime connect failed", e);
+            scheduleReconnect();
+            return;
+        }
+        socket = opened[0];
+        CONNECT_MS.record(SystemClock.elapsedRealtime() - startedAt);
+        join(userId, accessToken);
+        heartbeat = executor.scheduleWithFixedDelay(this::sendHeartbeat, HEARTBEAT_INTERVAL_MS,
+            HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void join(String userId, String accessToken) {
+        try {
+            JSONArray changes = new JSONArray()
+                .put(insertsOf("chat_messages", "receiver_id=eq." + userId))
+                .put(insertsOf("notices", "renter_id=eq." + userId));
+            JSONObject config = new JSONObject()
+                .put("broadcast", new JSONObject().put("self", false))
+                .put("presence", new JSONObject().put("key", ""))
+                .put("postgres_changes", changes);
+            JSONObject payload = new JSONObject()
+                .put("config", config)
+                .put("access_token", accessToken);
+            joinRef = nextRef();
+            send(new JSONObject()
+                .put("topic", TOPIC)
+                .put("event", "phx_join")
+                .put("payload", payload)
+                .put("ref", joinRef)
+                .put("join_ref", joinRef));
+            joinedToken = accessToken;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to build realtime join", e);
+        }
+    }
+
+    private static JSONObject insertsOf(String table, String filter) throws Exception {
+        return new JSONObject()
+            .put("event", "INSERT")
+            .put("schema", "public")
+            .put("table", table)
+            .put("filter", filter);
+    }
+
+    private void sendHeartbeat() {
+        if (pendingHeartbeatRef != null) {
+            // The last one was never answered; the connection is half-open
+            Log.w(TAG, "Realtime heartbeat timed out");
+            dropAndReconnect();
+            return;
+        }
+        try {
+            pendingHeartbeatRef = nextRef();
+            send(new JSONObject()
+                .put("topic", "phoenix")
+                .put("event", "heartbeat")
+                .put("payload", new JSONObject())
+                .put("ref", pendingHeartbeatRef));
+        } catch (Exception e) {
+            dropAndReconnect();
+        }
+    }
+
+    private void onAccessTokenChanged() {
+        String accessToken = session.get().accessToken;
+        if (socket == null) {
+            connect();
+            return;
+        }
+        if (accessToken == null || !equals(subjectOf(accessToken), subjectOf(joinedToken))) {
+            // Signed out or a different user: the filters no longer apply
+            disconnect();
+            connect();
+            return;
+        }
+        try {
+            // Same user, refreshed JWT; the server re-checks RLS with it
+            send(new JSONObject()
+                .put("topic", TOPIC)
+                .put("event", "access_token")
+                .put("payload", new JSONObject().put("access_token", accessToken))
+                .put("ref", nextRef()));
+            joinedToken = accessToken;
+        } catch (Exception e) {
+            dropAndReconnect();
+        }
+    }
+
+    // Runs on the socket's reader thread, so inserts are dispatched without a thread hop
+    private void handleMessage(String text) {
+        long startedAt = SystemClock.elapsedRealtimeNanos();
+        try {
+            JSONObject message = new JSONObject(text);
+            String event = message.optString("event");
+            if ("phx_reply".equals(event)) {
+                final String replyRef = message.optString("ref");
+                final boolean ok = "ok".equals(message.optJSONObject("payload") != null
+                    ? message.optJSONObject("payload").optString("status") : null);
+                executor.execute(() -> onReply(replyRef, ok, text));
+            } else if ("postgres_changes".equals(event)) {
+                JSONObject data = message.getJSONObject("payload").getJSONObject("data");
+                JSONObject detail = new JSONObject()
+                    .put("table", data.optString("table"))
+                    .put("record", data.optJSONObject("record"));
+                INSERTS_RECEIVED.increment();
+                WebEventBridge.getInstance().dispatch("realtimeInsert", detail);
+                HANDLE_US.record((SystemClock.elapsedRealtimeNanos() - startedAt) / 1000L);
+            } else if ("phx_error".equals(event) || "phx_close".equals(event)) {
+                joined = false;
+                Log.w(TAG, "Realtime channel " + event + ", reconnecting");
+                executor.execute(this::dropAndReconnect);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring malformed realtime message", e);
+        }
+    }
+
+    private void onReply(String replyRef, boolean ok, String text) {
+        if (replyRef.equals(pendingHeartbeatRef)) {
+            pendingHeartbeatRef = null;
+            return;
+        }
+        if (!replyRef.equals(joinRef)) {
+            if (!ok) {
+                Log.w(TAG, "Realtime reply error: " + text);
+            }
+            return;
+        }
+        if (ok) {
+            // Subscribed; the next failure starts backing off from the minimum again
+            attempt = 0;
+            joined = true;
+            Log.d(TAG, "Realtime channel joined");
+        } else {
+            // Rejected (e.g. an expired token); pushes keep showing until a join succeeds
+            Log.w(TAG, "Realtime join rejected: " + text);
+            dropAndReconnect();
+        }
+    }
+
+    private void onSocketClosed(RealtimeSocket closed, Exception cause) {
+        if (closed != socket) {
+            // A socket this client already replaced or dropped
+            return;
+        }
+        Log.d(TAG, "Realtime socket closed" + (cause != null ? ": " + cause.getMessage() : ""));
+        resetConnection();
+        scheduleReconnect();
+    }
+
+    private void dropAndReconnect() {
+        if (socket != null) {
+            RealtimeSocket dropped = socket;
+            resetConnection();
+            dropped.close();
+        }
+        scheduleReconnect();
+    }
+
+    private void disconnect() {
+        cancel(reconnect);
+        if (socket != null) {
+            RealtimeSocket closing = socket;
+            resetConnection();
+            closing.close();
+        }
+    }
+
+    private void resetConnection() {
+        cancel(heartbeat);
+        socket = null;
+        joined = false;
+        joinRef = null;
+        pendingHeartbeatRef = null;
+        joinedToken = null;
+    }
+
+    private void scheduleReconnect() {
+        if (!foreground || (reconnect != null && !reconnect.isDone())) {
+            return;
+        }
+        RECONNECTS.increment();
+        // Exponential with jitter so a server restart doesn't get every client at once
+        long ceiling = Math.min(MAX_BACKOFF_MS, MIN_BACKOFF_MS << Math.min(attempt, 5));
+        long delayMs = MIN_BACKOFF_MS / 2 + (long) (jitter.nextDouble() * ceiling);
+        attempt++;
+        Log.d(TAG, "Realtime reconnect in " + delayMs + "ms (attempt " + attempt + ")");
+        reconnect = executor.schedule(this::connect, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(JSONObject message) throws Exception {
+        RealtimeSocket current = socket;
+        if (current == null) {
+            throw new IllegalStateException("Realtime not connected");
+        }
+        current.sendText(message.toString());
+    }
+
+    private String nextRef() {
+        return Integer.toString(++ref);
+    }
+
+    private static void cancel(ScheduledFuture<?> future) {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /** The Supabase user id (JWT sub) the filters are scoped to, or null for no or bad tokens. */
+    static String subjectOf(String jwt) {
+        if (jwt == null) {
+            return null;
+        }
+        String[] parts = jwt.split("\\.");
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            byte[] claims = Base64.decode(parts[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+            String sub = new JSONObject(new String(claims, "UTF-8")).optString("sub", null);
+            return sub != null && !sub.isEmpty() ? sub : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
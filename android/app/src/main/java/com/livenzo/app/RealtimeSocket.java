@@ -0,0 +1,317 @@
+package com.livenzo.app;
+
+import android.net.Uri;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Locale;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Minimal RFC 6455 client: text frames, ping/pong and close, no extensions. Enough for the
+ * Realtime protocol without pulling in a networking library. Plain ws:// is accepted so the
+ * client can be pointed at a local stand-in server.
+ */
+final class RealtimeSocket {
+    private static final String TAG = "LIVENZO_NET";
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    interface Listener {
+        void onText(String text);
+
+        /** Called once when the connection ends, with the cause or null for a clean close. */
+        void onClosed(Exception cause);
+    }
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private volatile boolean closed;
+
+    private RealtimeSocket(Socket socket, InputStream in, OutputStream out) {
+        this.socket = socket;
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Opens the connection and completes the upgrade handshake on the calling thread, then reads
+     * frames on a dedicated thread until the connection ends.
+     */
+    static RealtimeSocket connect(String url, Listener listener) throws IOException {
+        return connect(url, listener, CONNECT_TIMEOUT_MS);
+    }
+
+    /** Tests pass a short timeout to exercise a server that never answers the upgrade. */
+    static RealtimeSocket connect(String url, final Listener listener, int timeoutMs) throws IOException {
+        Uri uri = Uri.parse(url);
+        boolean secure = "wss".equals(uri.getScheme());
+        String host = uri.getHost();
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+
+        Socket socket = SocketFactory.getDefault().createSocket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            // Bounds the TLS and upgrade handshakes; a server that accepts and then stays silent
+            // would otherwise block the control thread forever
+            socket.setSoTimeout(timeoutMs);
+            if (secure) {
+                SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                    .createSocket(socket, host, port, true);
+                ssl.startHandshake();
+                // Raw SSL sockets skip hostname verification; HttpsURLConnection would do this for us
+                if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, ssl.getSession())) {
+                    throw new IOException("Hostname verification failed for " + host);
+                }
+                socket = ssl;
+            }
+            socket.setTcpNoDelay(true);
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            handshake(uri, host, port, secure, in, out);
+            // Frames can be minutes apart on a quiet channel; heartbeats detect a dead connection
+            socket.setSoTimeout(0);
+
+            final RealtimeSocket realtimeSocket = new RealtimeSocket(socket, in, out);
+            // Blocks in read() for the life of the socket, so it gets its own thread rather than
+            // permanently holding one of NetworkExecutor's
+            Thread reader = new Thread(() -> realtimeSocket.readLoop(listener), "livenzo-realtime");
+            reader.setDaemon(true);
+            reader.start();
+            return realtimeSocket;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    void sendText(String text) throws IOException {
+        sendFrame(OP_TEXT, text.getBytes("UTF-8"));
+    }
+
+    /** Sends a close frame and drops the connection; the listener sees a clean close. */
+    void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            // 1000: normal closure
+            sendFrame(OP_CLOSE, new byte[]{0x03, (byte) 0xE8});
+        } catch (IOException e) {
+            // Already gone; closing the socket below is all that's left
+        }
+        closed = true;
+        closeQuietly(socket);
+    }
+
+    private static void handshake(Uri uri, String host, int port, boolean secure, InputStream in, OutputStream out)
+            throws IOException {
+        byte[] nonce = new byte[16];
+        RANDOM.nextBytes(nonce);
+        String key = Base64.encodeToString(nonce, Base64.NO_WRAP);
+        String path = uri.getEncodedPath() != null && !uri.getEncodedPath().isEmpty() ? uri.getEncodedPath() : "/";
+        if (uri.getEncodedQuery() != null) {
+            path += "?" + uri.getEncodedQuery();
+        }
+        boolean defaultPort = port == (secure ? 443 : 80);
+
+        String request = "GET " + path + " HTTP/1.1\r\n"
+            + "Host: " + host + (defaultPort ? "" : ":" + port) + "\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Key: " + key + "\r\n"
+            + "Sec-WebSocket-Version: 13\r\n"
+            + "\r\n";
+        out.write(request.getBytes("UTF-8"));
+        out.flush();
+
+        String status = readLine(in);
+        if (!status.startsWith("HTTP/1.1 101")) {
+            throw new IOException("Upgrade rejected: " + status);
+        }
+        String accept = null;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.US).equals("sec-websocket-accept")) {
+                accept = line.substring(colon + 1).trim();
+            }
+        }
+        if (!expectedAccept(key).equals(accept)) {
+            throw new IOException("Bad Sec-WebSocket-Accept");
+        }
+    }
+
+    private static String expectedAccept(String key) throws IOException {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.encodeToString(sha1.digest((key + ACCEPT_GUID).getBytes("UTF-8")), Base64.NO_WRAP);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        // Byte by byte so nothing past the headers is consumed
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) b);
+            if (line.length() > 8192) {
+                throw new IOException("Handshake header too long");
+            }
+        }
+        throw new EOFException("Connection closed during handshake");
+    }
+
+    private void readLoop(Listener listener) {
+        Exception cause = null;
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        try {
+            while (true) {
+                int b0 = readByte();
+                int b1 = readByte();
+                boolean fin = (b0 & 0x80) != 0;
+                int opcode = b0 & 0x0F;
+                boolean masked = (b1 & 0x80) != 0;
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    length = (readByte() << 8) | readByte();
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte();
+                    }
+                }
+                if (length > MAX_MESSAGE_BYTES || message.size() + length > MAX_MESSAGE_BYTES) {
+                    throw new IOException("Frame too large: " + length);
+                }
+                byte[] mask = null;
+                if (masked) {
+                    mask = new byte[4];
+                    readFully(mask);
+                }
+                byte[] payload = new byte[(int) length];
+                readFully(payload);
+                if (mask != null) {
+                    for (int i = 0; i < payload.length; i++) {
+                        payload[i] ^= mask[i % 4];
+                    }
+                }
+
+                if (opcode == OP_PING) {
+                    sendFrame(OP_PONG, payload);
+                } else if (opcode == OP_PONG) {
+                    // Liveness is tracked with protocol heartbeats instead
+                } else if (opcode == OP_CLOSE) {
+                    close();
+                    break;
+                } else if (opcode == OP_TEXT || opcode == OP_CONTINUATION) {
+                    message.write(payload, 0, payload.length);
+                    if (fin) {
+                        String text = message.toString("UTF-8");
+                        message.reset();
+                        listener.onText(text);
+                    }
+                }
+                // Binary frames are not part of the protocol and are skipped
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                cause = e;
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Realtime listener failed", e);
+            cause = e;
+        }
+        closed = true;
+        closeQuietly(socket);
+        listener.onClosed(cause);
+    }
+
+    private synchronized void sendFrame(int opcode, byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("Socket closed");
+        }
+        // Client frames are always masked
+        int length = payload.length;
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(length + 14);
+        frame.write(0x80 | opcode);
+        if (length < 126) {
+            frame.write(0x80 | length);
+        } else if (length <= 0xFFFF) {
+            frame.write(0x80 | 126);
+            frame.write(length >>> 8);
+            frame.write(length);
+        } else {
+            frame.write(0x80 | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame.write((int) ((long) length >>> shift));
+            }
+        }
+        byte[] mask = new byte[4];
+        RANDOM.nextBytes(mask);
+        frame.write(mask, 0, 4);
+        for (int i = 0; i < length; i++) {
+            frame.write(payload[i] ^ mask[i % 4]);
+        }
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Connection closed");
+        }
+        return b;
+    }
+
+    private void readFully(byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                throw new EOFException("Connection closed");
+            }
+            offset += read;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+}
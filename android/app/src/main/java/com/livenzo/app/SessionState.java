@@ -0,0 +1,248 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Log;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory view of the current session. Readers get an immutable snapshot through a volatile
+ * read, so JS bridge calls never touch FirebaseAuth or SharedPreferences.
+ */
+public final class SessionState {
+    private static final String TAG = "LIVENZO_AUTH";
+    private static final String AUTH_PREFS = "livenzo_auth";
+    private static final String APP_PREFS = "livenzo_prefs";
+    private static final String ACCESS_TOKEN_KEY = "supabase_access_token";
+    private static final String ACCESS_TOKEN_EXPIRY_KEY = "supabase_access_token_expires_at";
+    // A restored JWT must outlive the push work it is restored for
+    private static final long ACCESS_TOKEN_MIN_REMAINING_MS = 60_000L;
+
+    public static final class Snapshot {
+        public final String uid;
+        public final String phone;
+        public final String fcmToken;
+        // Set once the Supabase profile sync succeeded; persisted as is_logged_in
+        public final boolean profileSynced;
+        // Supabase user JWT handed over by the web app, for native reads behind RLS. Persisted
+        // with its expiry so a push that cold-starts the process can still prefetch
+        public final String accessToken;
+
+        Snapshot(String uid, String phone, String fcmToken, boolean profileSynced, String accessToken) {
+            this.uid = uid;
+            this.phone = phone;
+            this.fcmToken = fcmToken;
+            this.profileSynced = profileSynced;
+            this.accessToken = accessToken;
+        }
+
+        public boolean isLoggedIn() {
+            return uid != null && profileSynced;
+        }
+    }
+
+    public interface Listener {
+        void onSessionChanged(Snapshot previous, Snapshot current);
+    }
+
+    private static volatile SessionState instance;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final SharedPreferences authPrefs;
+    private volatile Snapshot current;
+
+    private SessionState(Context context) {
+        this(context, FirebaseAuth.getInstance());
+    }
+
+    /**
+     * Tests pass a null auth: the session then starts signed out and changes only through the
+     * on* calls.
+     */
+    SessionState(Context context, FirebaseAuth auth) {
+        authPrefs = context.getSharedPreferences(AUTH_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences appPrefs = context.getSharedPreferences(APP_PREFS, Context.MODE_PRIVATE);
+        FirebaseUser user = auth != null ? auth.getCurrentUser() : null;
+
+        current = new Snapshot(
+            uidOf(user),
+            phoneOf(user),
+            appPrefs.getString("fcm_token", null),
+            authPrefs.getBoolean("is_logged_in", false),
+            restoreAccessToken()
+        );
+
+        if (auth != null) {
+            // Covers sign-in, sign-out and ID token refreshes made by Firebase itself
+            auth.addIdTokenListener(this::onFirebaseAuthChanged);
+        }
+    }
+
+    public static SessionState getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SessionState.class) {
+                if (instance == null) {
+                    instance = new SessionState(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public Snapshot get() {
+        return current;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void onSignedIn(String uid, String phone, String fcmToken) {
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            current = new Snapshot(uid, phone, fcmToken != null ? fcmToken : previous.fcmToken, true,
+                previous.accessToken);
+        }
+        notifyListeners(previous);
+    }
+
+    public void onSignedOut() {
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            current = new Snapshot(null, null, previous.fcmToken, false, null);
+            persistAccessToken(null);
+        }
+        notifyListeners(previous);
+    }
+
+    public void onFcmToken(String fcmToken) {
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            if (fcmToken == null || fcmToken.equals(previous.fcmToken)) {
+                return;
+            }
+            current = new Snapshot(previous.uid, previous.phone, fcmToken, previous.profileSynced,
+                previous.accessToken);
+        }
+        notifyListeners(previous);
+    }
+
+    public void onSupabaseAccessToken(String accessToken) {
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            if (equals(accessToken, previous.accessToken)) {
+                return;
+            }
+            current = new Snapshot(previous.uid, previous.phone, previous.fcmToken, previous.profileSynced,
+                accessToken);
+            persistAccessToken(accessToken);
+        }
+        notifyListeners(previous);
+    }
+
+    private void onFirebaseAuthChanged(FirebaseAuth auth) {
+        FirebaseUser user = auth.getCurrentUser();
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            String uid = uidOf(user);
+            String phone = phoneOf(user);
+            if (equals(uid, previous.uid) && equals(phone, previous.phone)) {
+                return;
+            }
+            current = new Snapshot(uid, phone, previous.fcmToken, previous.profileSynced, previous.accessToken);
+        }
+        Log.d(TAG, "Firebase auth state changed, signed in: " + (user != null));
+        notifyListeners(previous);
+    }
+
+    /**
+     * Benchmark builds fall back to the user BenchmarkSessionReceiver seeds into livenzo_auth, since
+     * a macrobenchmark cannot complete a Firebase phone sign-in.
+     */
+    private String uidOf(FirebaseUser user) {
+        if (user != null) {
+            return user.getUid();
+        }
+        return BuildConfig.SEEDED_SESSION ? authPrefs.getString("firebase_uid", null) : null;
+    }
+
+    private String phoneOf(FirebaseUser user) {
+        if (user != null) {
+            return user.getPhoneNumber();
+        }
+        return BuildConfig.SEEDED_SESSION ? authPrefs.getString("phone_number", null) : null;
+    }
+
+    private String restoreAccessToken() {
+        String token = authPrefs.getString(ACCESS_TOKEN_KEY, null);
+        long expiresAt = authPrefs.getLong(ACCESS_TOKEN_EXPIRY_KEY, 0L);
+        if (token != null && expiresAt - System.currentTimeMillis() > ACCESS_TOKEN_MIN_REMAINING_MS) {
+            return token;
+        }
+        if (token != null) {
+            // Expired, or stored by an earlier build without an expiry
+            persistAccessToken(null);
+        }
+        return null;
+    }
+
+    private void persistAccessToken(String accessToken) {
+        long expiresAt = expiresAtOf(accessToken);
+        if (expiresAt > 0) {
+            authPrefs.edit()
+                .putString(ACCESS_TOKEN_KEY, accessToken)
+                .putLong(ACCESS_TOKEN_EXPIRY_KEY, expiresAt)
+                .apply();
+        } else {
+            // Never keep a token whose lifetime we can't tell
+            authPrefs.edit().remove(ACCESS_TOKEN_KEY).remove(ACCESS_TOKEN_EXPIRY_KEY).apply();
+        }
+    }
+
+    /**
+     * The JWT's exp claim in epoch millis, or 0 when the token is null or has none.
+     */
+    static long expiresAtOf(String jwt) {
+        if (jwt == null) {
+            return 0L;
+        }
+        String[] parts = jwt.split("\\.");
+        if (parts.length < 2) {
+            return 0L;
+        }
+        try {
+            byte[] claims = Base64.decode(parts[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+            return new JSONObject(new String(claims, "UTF-8")).optLong("exp", 0L) * 1000L;
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+
+    private void notifyListeners(Snapshot previous) {
+        Snapshot snapshot = current;
+        for (Listener listener : listeners) {
+            listener.onSessionChanged(previous, snapshot);
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
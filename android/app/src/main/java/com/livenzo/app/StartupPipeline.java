@@ -0,0 +1,122 @@
+package com.livenzo.app;
+
+import android.os.Process;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs non-critical startup work on a small background pool. Each step starts as soon as the
+ * steps it depends on have finished, so independent steps overlap; among ready steps the one
+ * added first goes first. A step whose dependency failed is skipped.
+ */
+final class StartupPipeline {
+    private static final String TAG = "LIVENZO_STARTUP";
+    private static final int THREADS = 3;
+
+    interface Step {
+        void run() throws Exception;
+    }
+
+    private static final class Node {
+        final String name;
+        final Step step;
+        final List<String> dependsOn;
+
+        Node(String name, Step step, String[] dependsOn) {
+            this.name = name;
+            this.step = step;
+            this.dependsOn = Arrays.asList(dependsOn);
+        }
+    }
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    // Guarded by this once started
+    private final Set<String> completed = new HashSet<>();
+    private final Set<String> settled = new HashSet<>();
+    private final List<Node> pending = new ArrayList<>();
+    private int running;
+    private ExecutorService executor;
+
+    StartupPipeline add(String name, Step step, String... dependsOn) {
+        nodes.add(new Node(name, step, dependsOn));
+        return this;
+    }
+
+    void start() {
+        final AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(THREADS, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "livenzo-startup-" + count.incrementAndGet()));
+        synchronized (this) {
+            pending.addAll(nodes);
+            scheduleReady();
+        }
+    }
+
+    // Called with the lock held
+    private void scheduleReady() {
+        boolean progressed = true;
+        while (progressed) {
+            progressed = false;
+            Iterator<Node> it = pending.iterator();
+            while (it.hasNext()) {
+                final Node node = it.next();
+                if (!settled.containsAll(node.dependsOn)) {
+                    continue;
+                }
+                it.remove();
+                if (!completed.containsAll(node.dependsOn)) {
+                    Log.w(TAG, "Skipping " + node.name + ", a dependency failed");
+                    settled.add(node.name);
+                    // Steps waiting on this one can now be skipped too
+                    progressed = true;
+                    continue;
+                }
+                running++;
+                executor.execute(() -> runStep(node));
+            }
+        }
+
+        if (running == 0) {
+            if (!pending.isEmpty()) {
+                Log.e(TAG, "Startup steps have unresolved dependencies: " + pending.size());
+            }
+            executor.shutdown();
+        }
+    }
+
+    private void runStep(Node node) {
+        boolean ok = false;
+        // Named sections let the startup macrobenchmark time individual steps
+        Trace.beginSection("startup." + node.name);
+        try {
+            node.step.run();
+            ok = true;
+            StartupTrace.mark(node.name);
+        } catch (Exception e) {
+            Log.e(TAG, "Startup step " + node.name + " failed", e);
+        } finally {
+            Trace.endSection();
+        }
+        synchronized (this) {
+            running--;
+            settled.add(node.name);
+            if (ok) {
+                completed.add(node.name);
+            }
+            scheduleReady();
+        }
+    }
+}
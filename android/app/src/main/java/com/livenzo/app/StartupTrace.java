@@ -0,0 +1,75 @@
+package com.livenzo.app;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ViewTreeObserver;
+import android.webkit.WebView;
+
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records cold-start phase timestamps, in milliseconds since process start.
+ */
+public final class StartupTrace {
+    private static final String TAG = "LIVENZO_STARTUP";
+
+    private static final long CLASS_LOADED_AT = SystemClock.uptimeMillis();
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private StartupTrace() {
+    }
+
+    public static void mark(String phase) {
+        long offset = SystemClock.uptimeMillis() - processStartUptime();
+        synchronized (phases) {
+            if (phases.containsKey(phase)) {
+                return;
+            }
+            phases.put(phase, offset);
+        }
+        Log.d(TAG, phase + " at +" + offset + "ms");
+    }
+
+    public static Long get(String phase) {
+        synchronized (phases) {
+            return phases.get(phase);
+        }
+    }
+
+    public static String toJson() {
+        synchronized (phases) {
+            return new JSONObject(phases).toString();
+        }
+    }
+
+    /**
+     * Marks "first_frame" when the WebView first draws.
+     */
+    public static void observeFirstFrame(WebView webView) {
+        final ViewTreeObserver observer = webView.getViewTreeObserver();
+        observer.addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                mark("first_frame");
+                // Listeners cannot be removed from inside onDraw
+                webView.post(() -> {
+                    if (observer.isAlive()) {
+                        observer.removeOnDrawListener(this);
+                    }
+                });
+            }
+        });
+    }
+
+    private static long processStartUptime() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Process.getStartUptimeMillis();
+        }
+        return CLASS_LOADED_AT;
+    }
+}
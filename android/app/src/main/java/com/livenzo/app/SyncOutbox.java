@@ -0,0 +1,379 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * File-backed queue of sync requests that failed or have not been sent yet. Entries share a
+ * collapse key, so a newer payload for the same key replaces the one still waiting.
+ */
+public final class SyncOutbox {
+    private static final String TAG = "LIVENZO_NET";
+    private static final String FILE_NAME = "sync_outbox.json";
+    private static final int MAX_ENTRIES = 50;
+    private static final int BATCH_SIZE = 10;
+    private static final long BASE_BACKOFF_MS = 2_000L;
+    private static final long MAX_BACKOFF_MS = 10 * 60_000L;
+    private static final int MAX_ATTEMPTS = 12;
+
+    public static final String TARGET_FUNCTION = "function";
+    public static final String TARGET_REST = "rest";
+
+    public interface Listener {
+        void onDelivered(Entry entry);
+    }
+
+    public static final class Entry {
+        public final String key;
+        public final String target;
+        public final String path;
+        public final String prefer;
+        public final String body;
+        final long createdAt;
+        int attempts;
+        long nextAttemptAt;
+        // The last attempt never reached the server, so regaining a network is worth an early retry
+        boolean offline;
+
+        Entry(String key, String target, String path, String prefer, String body, long createdAt) {
+            this.key = key;
+            this.target = target;
+            this.path = path;
+            this.prefer = prefer;
+            this.body = body;
+            this.createdAt = createdAt;
+        }
+
+        JSONObject toJson() throws Exception {
+            JSONObject json = new JSONObject();
+            json.put("key", key);
+            json.put("target", target);
+            json.put("path", path);
+            json.put("prefer", prefer);
+            json.put("body", body);
+            json.put("created_at", createdAt);
+            json.put("attempts", attempts);
+            json.put("next_attempt_at", nextAttemptAt);
+            json.put("offline", offline);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) {
+            Entry entry = new Entry(
+                json.optString("key"),
+                json.optString("target"),
+                json.optString("path"),
+                json.isNull("prefer") ? null : json.optString("prefer"),
+                json.optString("body"),
+                json.optLong("created_at")
+            );
+            entry.attempts = json.optInt("attempts");
+            entry.nextAttemptAt = json.optLong("next_attempt_at");
+            entry.offline = json.optBoolean("offline");
+            return entry;
+        }
+    }
+
+    private static volatile SyncOutbox instance;
+
+    private final File file;
+    private final NativeHttpClient client;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final Runnable drainRunnable = this::drain;
+    // Writes are fsync'd, so they stay off the callers' threads (enqueue runs on main)
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "livenzo-outbox-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean draining;
+    private boolean persistPending;
+
+    SyncOutbox(Context context, NativeHttpClient client) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.client = client;
+        load();
+        registerConnectivityCallback(context.getApplicationContext());
+    }
+
+    public static SyncOutbox getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SyncOutbox.class) {
+                if (instance == null) {
+                    instance = new SyncOutbox(context, NativeHttpClient.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void enqueue(String key, String target, String path, String prefer, String body) {
+        Entry entry = new Entry(key, target, path, prefer, body, System.currentTimeMillis());
+        synchronized (this) {
+            // A newer payload for the same key supersedes whatever is still waiting
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                if (it.next().key.equals(key)) {
+                    it.remove();
+                }
+            }
+            entries.add(entry);
+            while (entries.size() > MAX_ENTRIES) {
+                Log.w(TAG, "Outbox full, dropping " + entries.remove(0).key);
+            }
+            persist();
+        }
+        drain();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public void drain() {
+        synchronized (this) {
+            if (draining || entries.isEmpty()) {
+                return;
+            }
+            draining = true;
+        }
+
+        if (NetworkExecutor.getInstance().submitBackground(null, "sync-outbox-drain", this::drainBatch) == null) {
+            // Background lane is full; the next enqueue or reconnect drains again
+            synchronized (this) {
+                draining = false;
+            }
+        }
+    }
+
+    private void drainBatch() {
+        try {
+            List<Entry> batch = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                for (Entry entry : entries) {
+                    if (entry.nextAttemptAt <= now) {
+                        batch.add(entry);
+                        if (batch.size() == BATCH_SIZE) {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            for (Entry entry : batch) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                deliver(entry);
+            }
+        } finally {
+            boolean moreDue;
+            synchronized (this) {
+                draining = false;
+                moreDue = hasDueEntry();
+            }
+            if (moreDue) {
+                drain();
+            } else {
+                scheduleNextAttempt();
+            }
+        }
+    }
+
+    private void deliver(Entry entry) {
+        boolean delivered;
+        boolean retryable;
+        boolean offline = false;
+        try {
+            NativeHttpClient.Response response = TARGET_REST.equals(entry.target)
+                ? client.postRest(entry.path, entry.body, entry.prefer)
+                : client.postFunction(entry.path, entry.body);
+            delivered = response.isSuccessful();
+            retryable = isRetryable(response.code);
+        } catch (IOException e) {
+            Log.w(TAG, "Outbox delivery failed for " + entry.key + ": " + e.getMessage());
+            delivered = false;
+            retryable = true;
+            offline = true;
+        }
+
+        synchronized (this) {
+            // The entry may have been superseded while the request was in flight
+            boolean current = entries.contains(entry);
+            if (delivered || !retryable || entry.attempts + 1 >= MAX_ATTEMPTS) {
+                if (!delivered) {
+                    Log.e(TAG, "Dropping outbox entry " + entry.key + " after " + (entry.attempts + 1) + " attempt(s)");
+                }
+                entries.remove(entry);
+            } else if (current) {
+                entry.attempts++;
+                entry.offline = offline;
+                entry.nextAttemptAt = System.currentTimeMillis() + backoffMillis(entry.attempts);
+            }
+            persist();
+        }
+
+        if (delivered) {
+            for (Listener listener : listeners) {
+                listener.onDelivered(entry);
+            }
+        }
+    }
+
+    public static boolean isRetryable(int responseCode) {
+        return responseCode >= 500 || responseCode == 408 || responseCode == 429;
+    }
+
+    long backoffMillis(int attempts) {
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        // Equal jitter: half fixed, half random, so retries from many devices spread out
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    private boolean hasDueEntry() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries) {
+            if (entry.nextAttemptAt <= now) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleNextAttempt() {
+        long next = Long.MAX_VALUE;
+        synchronized (this) {
+            for (Entry entry : entries) {
+                next = Math.min(next, entry.nextAttemptAt);
+            }
+        }
+        handler.removeCallbacks(drainRunnable);
+        if (next != Long.MAX_VALUE) {
+            handler.postDelayed(drainRunnable, Math.max(0L, next - System.currentTimeMillis()));
+        }
+    }
+
+    private void registerConnectivityCallback(Context context) {
+        ConnectivityManager connectivityManager =
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        NetworkRequest request = new NetworkRequest.Builder()
+            .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            .build();
+        connectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                onNetworkAvailable();
+            }
+        });
+    }
+
+    void onNetworkAvailable() {
+        // Only entries that failed for lack of a connection skip their backoff; server errors
+        // keep it so a struggling backend isn't hit again every time the network flaps
+        synchronized (this) {
+            for (Entry entry : entries) {
+                if (entry.offline) {
+                    entry.nextAttemptAt = 0L;
+                }
+            }
+        }
+        drain();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            FileInputStream in = new FileInputStream(file);
+            byte[] data;
+            try {
+                data = new byte[(int) file.length()];
+                int offset = 0;
+                while (offset < data.length) {
+                    int read = in.read(data, offset, data.length - offset);
+                    if (read == -1) {
+                        break;
+                    }
+                    offset += read;
+                }
+            } finally {
+                in.close();
+            }
+            JSONArray array = new JSONArray(new String(data, "UTF-8"));
+            for (int i = 0; i < array.length(); i++) {
+                entries.add(Entry.fromJson(array.getJSONObject(i)));
+            }
+            Log.d(TAG, "Loaded " + entries.size() + " pending outbox entr(ies)");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read sync outbox, starting empty", e);
+            entries.clear();
+        }
+    }
+
+    // Called with the lock held; back-to-back changes collapse into one write of the latest state
+    private void persist() {
+        if (persistPending) {
+            return;
+        }
+        persistPending = true;
+        writer.execute(this::writeSnapshot);
+    }
+
+    private void writeSnapshot() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            JSONArray array = new JSONArray();
+            synchronized (this) {
+                persistPending = false;
+                for (Entry entry : entries) {
+                    array.put(entry.toJson());
+                }
+            }
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(array.toString().getBytes("UTF-8"));
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist sync outbox", e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+/**
+ * Single entry point for uploading the FCM token. Triggers are debounced into one request and
+ * skipped entirely when the server already has the token for that user. Uploads go through
+ * {@link SyncOutbox} so a failed sync is retried instead of lost.
+ */
+public final class TokenSyncEngine {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final String PREFS_NAME = "livenzo_prefs";
+    private static final String SYNCED_TOKEN_PREFIX = "synced_fcm_token_";
+    private static final long COALESCE_WINDOW_MS = 750L;
+    private static final String KEY_PREFIX = "fcm_token:";
+
+    private static volatile TokenSyncEngine instance;
+
+    private final SharedPreferences prefs;
+    private final SyncOutbox outbox;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Latest request wins; guarded by this
+    private String pendingUid;
+    private String pendingPhone;
+    private String pendingToken;
+    private boolean flushScheduled;
+
+    private final Runnable flushRunnable = this::flush;
+
+    private TokenSyncEngine(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.outbox = SyncOutbox.getInstance(context);
+        this.outbox.addListener(this::onDelivered);
+    }
+
+    public static TokenSyncEngine getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TokenSyncEngine.class) {
+                if (instance == null) {
+                    instance = new TokenSyncEngine(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void requestSync(String firebaseUid, String phoneNumber, String fcmToken) {
+        if (firebaseUid == null || phoneNumber == null || fcmToken == null) {
+            return;
+        }
+        if (fcmToken.equals(getSyncedToken(firebaseUid))) {
+            Log.d(TAG, "FCM token already synced for user, skipping upload");
+            return;
+        }
+
+        synchronized (this) {
+            pendingUid = firebaseUid;
+            pendingPhone = phoneNumber;
+            pendingToken = fcmToken;
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        handler.postDelayed(flushRunnable, COALESCE_WINDOW_MS);
+    }
+
+    /**
+     * Records a token sync-firebase-user accepted outside the outbox. Only that function writes
+     * the token where send-notification reads it, so no other request may mark it synced.
+     */
+    public void markSynced(String firebaseUid, String fcmToken) {
+        if (firebaseUid == null || fcmToken == null) {
+            return;
+        }
+        prefs.edit().putString(SYNCED_TOKEN_PREFIX + firebaseUid, fcmToken).apply();
+    }
+
+    /**
+     * Queues a login sync-firebase-user call for retry after a transient failure. It shares the
+     * token sync's key, so whichever payload is newer is the one delivered.
+     */
+    public void enqueueUserSync(String firebaseUid, String payload) {
+        outbox.enqueue(KEY_PREFIX + firebaseUid, SyncOutbox.TARGET_FUNCTION, "sync-firebase-user", null, payload);
+    }
+
+    public String getSyncedToken(String firebaseUid) {
+        return prefs.getString(SYNCED_TOKEN_PREFIX + firebaseUid, null);
+    }
+
+    private void onDelivered(SyncOutbox.Entry entry) {
+        if (!entry.key.startsWith(KEY_PREFIX)) {
+            return;
+        }
+        try {
+            JSONObject payload = new JSONObject(entry.body);
+            if (payload.has("fcm_token")) {
+                markSynced(payload.optString("firebase_uid"), payload.optString("fcm_token"));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read delivered token payload", e);
+        }
+    }
+
+    private void flush() {
+        final String uid;
+        final String phone;
+        final String token;
+        synchronized (this) {
+            flushScheduled = false;
+            uid = pendingUid;
+            phone = pendingPhone;
+            token = pendingToken;
+            pendingUid = null;
+            pendingPhone = null;
+            pendingToken = null;
+
+            if (token == null || token.equals(getSyncedToken(uid))) {
+                return;
+            }
+        }
+
+        try {
+            JSONObject payload = new JSONObject();
+            payload.put("firebase_uid", uid);
+            payload.put("phone_number", phone);
+            payload.put("fcm_token", token);
+
+            // Delivered, retried and superseded by the outbox; onDelivered records the ack
+            enqueueUserSync(uid, payload.toString());
+        } catch (Exception e) {
+            Log.e(TAG, "Error queueing FCM token sync", e);
+        }
+    }
+}
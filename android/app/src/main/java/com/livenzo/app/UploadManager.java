@@ -0,0 +1,646 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resumable document uploads over the TUS protocol that Supabase Storage exposes at
+ * /storage/v1/upload/resumable. The source is copied into app storage on the background lane, then
+ * the upload URL and confirmed offset are persisted after every chunk, so an interrupted upload
+ * continues where it stopped, including after process death. Failed attempts back off for up to
+ * a few minutes; an upload that runs out of attempts waits for the next network change or launch.
+ */
+public final class UploadManager {
+    private static final String TAG = "LIVENZO_UPLOAD";
+    private static final String STATE_FILE = "uploads.json";
+    private static final String STAGING_DIR = "uploads";
+    private static final String TUS_VERSION = "1.0.0";
+    // Supabase requires every chunk except the last to be exactly 6 MB
+    private static final long CHUNK_BYTES = 6L * 1024 * 1024;
+    private static final int MAX_CONCURRENT_UPLOADS = 2;
+    private static final long BASE_BACKOFF_MS = 2_000L;
+    private static final long MAX_BACKOFF_MS = 5 * 60_000L;
+    // Roughly half an hour of retrying before the upload waits for a network change or the next launch
+    private static final int MAX_ATTEMPTS = 15;
+    // 409s in a row before an offset mismatch counts as a failed attempt
+    private static final int MAX_OFFSET_RESYNCS = 3;
+    private static final long PROGRESS_INTERVAL_MS = 250L;
+
+    // Source still being copied into app storage; not resumable across process death
+    static final String STATE_STAGING = "staging";
+    static final String STATE_PENDING = "pending";
+    static final String STATE_UPLOADING = "uploading";
+    // Paused by JS; only resume() restarts it
+    static final String STATE_PAUSED = "paused";
+    // Out of attempts; restarted when a network becomes available and at the next launch
+    static final String STATE_WAITING = "waiting";
+    static final String STATE_COMPLETE = "complete";
+    static final String STATE_FAILED = "failed";
+
+    private static final class Upload {
+        final String id;
+        final String bucket;
+        final String objectPath;
+        final String contentType;
+        final boolean upsert;
+        final File file;
+        long size;
+        String uploadUrl;
+        long offset;
+        String state;
+        long lastReportAt;
+
+        Upload(String id, String bucket, String objectPath, String contentType, boolean upsert, File file, long size) {
+            this.id = id;
+            this.bucket = bucket;
+            this.objectPath = objectPath;
+            this.contentType = contentType;
+            this.upsert = upsert;
+            this.file = file;
+            this.size = size;
+            this.state = STATE_PENDING;
+        }
+
+        JSONObject toJson() throws Exception {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("bucket", bucket);
+            json.put("object_path", objectPath);
+            json.put("content_type", contentType);
+            json.put("upsert", upsert);
+            json.put("file", file.getPath());
+            json.put("size", size);
+            json.put("upload_url", uploadUrl);
+            json.put("offset", offset);
+            json.put("state", state);
+            return json;
+        }
+
+        static Upload fromJson(JSONObject json) {
+            Upload upload = new Upload(
+                json.optString("id"),
+                json.optString("bucket"),
+                json.optString("object_path"),
+                json.optString("content_type"),
+                json.optBoolean("upsert"),
+                new File(json.optString("file")),
+                json.optLong("size")
+            );
+            upload.uploadUrl = json.isNull("upload_url") ? null : json.optString("upload_url");
+            upload.offset = json.optLong("offset");
+            upload.state = json.optString("state", STATE_PENDING);
+            return upload;
+        }
+    }
+
+    private static volatile UploadManager instance;
+
+    private final Context context;
+    private final SessionState session;
+    private final String supabaseUrl;
+    private final File stateFile;
+    private final File stagingDir;
+    private final LinkedHashMap<String, Upload> uploads = new LinkedHashMap<>();
+    private final Map<String, Future<?>> running = new HashMap<>();
+    private final ThreadPoolExecutor executor;
+    // Writes are fsync'd, so they stay off the bridge and transfer threads
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "livenzo-upload-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Random random = new Random();
+    // Notified when a network becomes available, cutting short any backoff in progress
+    private final Object retrySignal = new Object();
+    private boolean persistPending;
+
+    private UploadManager(Context context) {
+        this(context, SessionState.getInstance(context), BuildConfig.SUPABASE_API_URL);
+    }
+
+    /** Tests point this at a local TUS stand-in. */
+    UploadManager(Context context, SessionState session, String supabaseUrl) {
+        this.context = context;
+        this.session = session;
+        this.supabaseUrl = supabaseUrl;
+        this.stateFile = new File(context.getFilesDir(), STATE_FILE);
+        this.stagingDir = new File(context.getFilesDir(), STAGING_DIR);
+        final AtomicInteger threadCount = new AtomicInteger(1);
+        // Not the shared NetworkExecutor: a transfer can hold its thread for minutes, which would
+        // starve login sync and prefetch. Unbounded queue; concurrency is what is limited, not how
+        // many uploads can wait
+        this.executor = new ThreadPoolExecutor(MAX_CONCURRENT_UPLOADS, MAX_CONCURRENT_UPLOADS, 30L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "livenzo-upload-" + threadCount.getAndIncrement()));
+        executor.allowCoreThreadTimeOut(true);
+        load();
+        registerConnectivityCallback(context.getApplicationContext());
+    }
+
+    public static UploadManager getInstance(Context context) {
+        if (instance == null) {
+            synchronized (UploadManager.class) {
+                if (instance == null) {
+                    instance = new UploadManager(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the source in the staging state and returns the upload ID used in JS events at once;
+     * the copy into app storage runs on the background lane so the bridge thread never waits on
+     * it. An invalid source throws here. An existing object at the path is only replaced when
+     * upsert is set.
+     */
+    public String enqueue(String source, String bucket, String objectPath, String contentType, boolean upsert)
+            throws IOException {
+        final Uri uri = ContentSources.parse(context, source);
+        String id = UUID.randomUUID().toString();
+        if (!stagingDir.exists() && !stagingDir.mkdirs()) {
+            throw new IOException("Cannot create upload staging dir");
+        }
+        final Upload upload = new Upload(id, bucket, objectPath,
+            contentType != null ? contentType : "application/octet-stream", upsert, new File(stagingDir, id), -1L);
+        upload.state = STATE_STAGING;
+        synchronized (this) {
+            uploads.put(id, upload);
+            persist();
+        }
+        if (NetworkExecutor.getInstance().submitBackground(null, "upload-staging", () -> stage(upload, uri)) == null) {
+            abandon(upload, "Upload queue full");
+        }
+        return id;
+    }
+
+    private void stage(Upload upload, Uri uri) {
+        try {
+            copy(uri, upload.file);
+        } catch (IOException e) {
+            Log.w(TAG, "Staging upload " + upload.id + " failed", e);
+            abandon(upload, e.getMessage());
+            return;
+        }
+        boolean start;
+        synchronized (this) {
+            if (uploads.get(upload.id) != upload) {
+                // Cancelled while copying
+                upload.file.delete();
+                return;
+            }
+            upload.size = upload.file.length();
+            // Paused while copying stays paused until JS resumes it
+            start = STATE_STAGING.equals(upload.state);
+            if (start) {
+                upload.state = STATE_PENDING;
+            }
+            persist();
+        }
+        if (start) {
+            schedule(upload);
+        }
+    }
+
+    private void abandon(Upload upload, String error) {
+        synchronized (this) {
+            uploads.remove(upload.id);
+            persist();
+        }
+        upload.file.delete();
+        dispatchResult(upload, STATE_FAILED, error);
+    }
+
+    /**
+     * Restarts uploads left pending, in flight or out of attempts by a previous process. Uploads
+     * JS paused stay paused.
+     */
+    public void resumePending() {
+        synchronized (this) {
+            for (Upload upload : uploads.values()) {
+                if (STATE_PENDING.equals(upload.state) || STATE_UPLOADING.equals(upload.state)
+                        || STATE_WAITING.equals(upload.state)) {
+                    upload.state = STATE_PENDING;
+                    schedule(upload);
+                }
+            }
+            persist();
+        }
+    }
+
+    void onNetworkAvailable() {
+        synchronized (this) {
+            for (Upload upload : uploads.values()) {
+                if (STATE_WAITING.equals(upload.state)) {
+                    upload.state = STATE_PENDING;
+                    schedule(upload);
+                }
+            }
+            persist();
+        }
+        // Uploads sleeping between attempts retry now instead of waiting out their backoff
+        synchronized (retrySignal) {
+            retrySignal.notifyAll();
+        }
+    }
+
+    public void resume(String id) {
+        Upload upload;
+        synchronized (this) {
+            upload = uploads.get(id);
+            if (upload == null || STATE_COMPLETE.equals(upload.state) || running.containsKey(id)) {
+                return;
+            }
+            if (upload.size < 0) {
+                // Still copying; staging schedules it once the copy is done
+                upload.state = STATE_STAGING;
+                return;
+            }
+            upload.state = STATE_PENDING;
+            persist();
+        }
+        schedule(upload);
+    }
+
+    public void pause(String id) {
+        Future<?> task;
+        synchronized (this) {
+            task = running.remove(id);
+            Upload upload = uploads.get(id);
+            if (upload != null && !STATE_COMPLETE.equals(upload.state)) {
+                upload.state = STATE_PAUSED;
+                persist();
+            }
+        }
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+
+    public void cancel(String id) {
+        pause(id);
+        Upload upload;
+        synchronized (this) {
+            upload = uploads.remove(id);
+            persist();
+        }
+        if (upload != null) {
+            upload.file.delete();
+            // The server-side upload expires on its own; no need to issue a DELETE
+        }
+    }
+
+    public synchronized String toJson() {
+        JSONArray array = new JSONArray();
+        try {
+            for (Upload upload : uploads.values()) {
+                JSONObject json = new JSONObject();
+                json.put("id", upload.id);
+                json.put("bucket", upload.bucket);
+                json.put("path", upload.objectPath);
+                json.put("size", upload.size);
+                json.put("offset", upload.offset);
+                json.put("state", upload.state);
+                array.put(json);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to serialize uploads", e);
+        }
+        return array.toString();
+    }
+
+    private synchronized void schedule(Upload upload) {
+        if (running.containsKey(upload.id)) {
+            return;
+        }
+        running.put(upload.id, executor.submit(() -> run(upload)));
+    }
+
+    private void run(Upload upload) {
+        int attempts = 0;
+        while (true) {
+            try {
+                transfer(upload);
+                finish(upload, STATE_COMPLETE, null);
+                return;
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Upload " + upload.id + " paused at " + upload.offset);
+                return;
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    Log.d(TAG, "Upload " + upload.id + " paused at " + upload.offset);
+                    return;
+                }
+                attempts++;
+                Log.w(TAG, "Upload " + upload.id + " attempt " + attempts + " failed at " + upload.offset, e);
+                if (attempts >= MAX_ATTEMPTS) {
+                    // Kept on disk; a network change, the next launch or JS resumes it
+                    finish(upload, STATE_WAITING, e.getMessage());
+                    return;
+                }
+                try {
+                    synchronized (retrySignal) {
+                        retrySignal.wait(backoffMillis(attempts));
+                    }
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    long backoffMillis(int attempts) {
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        // Equal jitter, as in SyncOutbox
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    private void transfer(Upload upload) throws Exception {
+        setState(upload, STATE_UPLOADING);
+        Map<String, String> headers = baseHeaders();
+
+        if (upload.uploadUrl == null) {
+            headers.put("Upload-Length", String.valueOf(upload.size));
+            headers.put("Upload-Metadata", "bucketName " + b64(upload.bucket)
+                + ",objectName " + b64(upload.objectPath)
+                + ",contentType " + b64(upload.contentType));
+            headers.put("x-upsert", String.valueOf(upload.upsert));
+            NativeHttpClient.Response created = NativeHttpClient.getInstance()
+                .send("POST", supabaseUrl + "/storage/v1/upload/resumable", headers);
+            String location = created.header("Location");
+            if (created.code != 201 || location == null) {
+                throw new IOException("Could not create upload: " + created.code + " " + created.body);
+            }
+            synchronized (this) {
+                upload.uploadUrl = location;
+                upload.offset = 0;
+                persist();
+            }
+        } else {
+            // Ask the server how much it already has; our persisted offset may be behind
+            syncOffset(upload);
+        }
+
+        final long startedAt = SystemClock.elapsedRealtime();
+        final long startOffset = upload.offset;
+        int resyncs = 0;
+        while (upload.offset < upload.size) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            final long chunkStart = upload.offset;
+            long length = Math.min(CHUNK_BYTES, upload.size - chunkStart);
+
+            Map<String, String> patchHeaders = baseHeaders();
+            // HttpURLConnection cannot send PATCH; TUS servers accept the override header
+            patchHeaders.put("X-HTTP-Method-Override", "PATCH");
+            patchHeaders.put("Upload-Offset", String.valueOf(chunkStart));
+            patchHeaders.put("Content-Type", "application/offset+octet-stream");
+
+            NativeHttpClient.Response response = NativeHttpClient.getInstance().sendFileRange(
+                "POST", upload.uploadUrl, patchHeaders, upload.file, chunkStart, length,
+                (sent, total) -> reportProgress(upload, chunkStart + sent, startOffset, startedAt));
+            if (response.code == 409 && resyncs < MAX_OFFSET_RESYNCS) {
+                // Offset mismatch, e.g. an earlier chunk landed but its response was lost
+                resyncs++;
+                Log.d(TAG, "Upload " + upload.id + " offset " + chunkStart + " rejected, asking the server");
+                syncOffset(upload);
+                continue;
+            }
+            if (response.code != 204) {
+                throw new IOException("Chunk at " + chunkStart + " rejected: " + response.code + " " + response.body);
+            }
+            resyncs = 0;
+            String newOffset = response.header("Upload-Offset");
+            synchronized (this) {
+                upload.offset = newOffset != null ? Long.parseLong(newOffset) : chunkStart + length;
+                persist();
+            }
+        }
+    }
+
+    private void syncOffset(Upload upload) throws IOException {
+        NativeHttpClient.Response head = NativeHttpClient.getInstance().send("HEAD", upload.uploadUrl, baseHeaders());
+        if (head.code == 404 || head.code == 410) {
+            synchronized (this) {
+                upload.uploadUrl = null;
+                persist();
+            }
+            throw new IOException("Upload expired on server, recreating");
+        }
+        String serverOffset = head.header("Upload-Offset");
+        if (serverOffset == null) {
+            throw new IOException("Offset query failed: " + head.code);
+        }
+        synchronized (this) {
+            upload.offset = Long.parseLong(serverOffset);
+            persist();
+        }
+    }
+
+    private void reportProgress(Upload upload, long bytesSent, long startOffset, long startedAt) {
+        long now = SystemClock.elapsedRealtime();
+        if (now - upload.lastReportAt < PROGRESS_INTERVAL_MS && bytesSent < upload.size) {
+            return;
+        }
+        upload.lastReportAt = now;
+        long elapsed = Math.max(1L, now - startedAt);
+        try {
+            JSONObject detail = new JSONObject();
+            detail.put("id", upload.id);
+            detail.put("bytesSent", bytesSent);
+            detail.put("totalBytes", upload.size);
+            detail.put("bytesPerSecond", (bytesSent - startOffset) * 1000L / elapsed);
+            WebEventBridge.getInstance().dispatch("uploadProgress", detail);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not report progress", e);
+        }
+    }
+
+    private void finish(Upload upload, String state, String error) {
+        synchronized (this) {
+            running.remove(upload.id);
+            upload.state = state;
+            if (STATE_COMPLETE.equals(state)) {
+                uploads.remove(upload.id);
+                upload.file.delete();
+            }
+            persist();
+        }
+        dispatchResult(upload, state, error);
+    }
+
+    private void dispatchResult(Upload upload, String state, String error) {
+        try {
+            JSONObject detail = new JSONObject();
+            detail.put("id", upload.id);
+            detail.put("bucket", upload.bucket);
+            detail.put("path", upload.objectPath);
+            detail.put("state", state);
+            if (error != null) {
+                detail.put("error", error);
+            }
+            WebEventBridge.getInstance().dispatch(STATE_COMPLETE.equals(state) ? "uploadComplete" : "uploadFailed", detail);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not report upload result", e);
+        }
+    }
+
+    private void setState(Upload upload, String state) {
+        synchronized (this) {
+            upload.state = state;
+            persist();
+        }
+    }
+
+    private Map<String, String> baseHeaders() {
+        String accessToken = session.get().accessToken;
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Tus-Resumable", TUS_VERSION);
+        headers.put("apikey", NativeHttpClient.SUPABASE_ANON_KEY);
+        headers.put("Authorization", "Bearer " + (accessToken != null ? accessToken : NativeHttpClient.SUPABASE_ANON_KEY));
+        return headers;
+    }
+
+    private static String b64(String value) throws IOException {
+        return Base64.encodeToString(value.getBytes("UTF-8"), Base64.NO_WRAP);
+    }
+
+    private void copy(Uri uri, File target) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void registerConnectivityCallback(Context context) {
+        ConnectivityManager connectivityManager =
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        NetworkRequest request = new NetworkRequest.Builder()
+            .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            .build();
+        connectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                onNetworkAvailable();
+            }
+        });
+    }
+
+    private void load() {
+        if (!stateFile.exists()) {
+            return;
+        }
+        try {
+            FileInputStream in = new FileInputStream(stateFile);
+            byte[] data = new byte[(int) stateFile.length()];
+            try {
+                int offset = 0;
+                while (offset < data.length) {
+                    int read = in.read(data, offset, data.length - offset);
+                    if (read == -1) {
+                        break;
+                    }
+                    offset += read;
+                }
+            } finally {
+                in.close();
+            }
+            JSONArray array = new JSONArray(new String(data, "UTF-8"));
+            for (int i = 0; i < array.length(); i++) {
+                Upload upload = Upload.fromJson(array.getJSONObject(i));
+                if (upload.size < 0) {
+                    // Died while copying; the page's grant on the source is gone with the process
+                    upload.file.delete();
+                } else if (upload.file.exists()) {
+                    uploads.put(upload.id, upload);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read upload state", e);
+        }
+    }
+
+    // Called with the lock held; back-to-back changes collapse into one write of the latest state
+    private void persist() {
+        if (persistPending) {
+            return;
+        }
+        persistPending = true;
+        writer.execute(this::writeSnapshot);
+    }
+
+    private void writeSnapshot() {
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try {
+            JSONArray array = new JSONArray();
+            synchronized (this) {
+                persistPending = false;
+                for (Upload upload : uploads.values()) {
+                    array.put(upload.toJson());
+                }
+            }
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(array.toString().getBytes("UTF-8"));
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(stateFile)) {
+                throw new IOException("rename failed");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist upload state", e);
+        }
+    }
+}
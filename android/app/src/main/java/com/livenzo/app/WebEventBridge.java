@@ -0,0 +1,187 @@
+package com.livenzo.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.WebView;
+
+import org.json.JSONObject;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Delivers native events to the web app as window CustomEvents. Events raised before the
+ * WebView is attached are queued, and everything pending is flushed in a single
+ * evaluateJavascript call on the next frame.
+ */
+public final class WebEventBridge {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final int MAX_QUEUED_EVENTS = 64;
+
+    private static final Metrics.Histogram DISPATCH_LATENCY_MS = Metrics.histogram("bridge.dispatch_latency_ms", Metrics.LATENCY_BUCKETS_MS);
+    private static final Metrics.Counter EVENTS_DISPATCHED = Metrics.counter("bridge.events_dispatched");
+    private static final Metrics.Counter EVENTS_DROPPED = Metrics.counter("bridge.events_dropped");
+
+    private static final WebEventBridge INSTANCE = new WebEventBridge();
+
+    private static final class Event {
+        final String name;
+        final String detailJson;
+        final long queuedAt;
+        final Runnable onDelivered;
+
+        Event(String name, String detailJson, Runnable onDelivered) {
+            this.name = name;
+            this.detailJson = detailJson;
+            this.queuedAt = SystemClock.elapsedRealtime();
+            this.onDelivered = onDelivered;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Guarded by this
+    private final ArrayDeque<Event> pending = new ArrayDeque<>();
+    private WeakReference<WebView> webView;
+    private boolean flushScheduled;
+
+    // Only touched on the main thread
+    private final StringBuilder script = new StringBuilder(256);
+    private final ArrayList<Runnable> delivered = new ArrayList<>();
+
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> flush();
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    private WebEventBridge() {
+    }
+
+    public static WebEventBridge getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Binds the bridge to the activity's WebView for its lifetime. Held weakly, so callers that
+     * outlive the activity (the messaging service, background executors) never keep it alive.
+     */
+    public void attach(WebView webView) {
+        synchronized (this) {
+            this.webView = new WeakReference<>(webView);
+        }
+        scheduleFlush();
+    }
+
+    public void detach(WebView webView) {
+        synchronized (this) {
+            if (this.webView != null && this.webView.get() == webView) {
+                this.webView = null;
+            }
+        }
+    }
+
+    private WebView attachedWebView() {
+        // Guarded by this
+        WebView target = webView != null ? webView.get() : null;
+        if (target == null) {
+            webView = null;
+        }
+        return target;
+    }
+
+    public void dispatch(String eventName, String detail) {
+        enqueue(eventName, detail != null ? JSONObject.quote(detail) : "null", null);
+    }
+
+    public void dispatch(String eventName, boolean detail) {
+        enqueue(eventName, detail ? "true" : "false", null);
+    }
+
+    public void dispatch(String eventName, JSONObject detail) {
+        enqueue(eventName, detail != null ? detail.toString() : "null", null);
+    }
+
+    /**
+     * Dispatches detail that is already serialized JSON (e.g. a parsed notification payload).
+     */
+    public void dispatchJson(String eventName, String detailJson) {
+        enqueue(eventName, detailJson != null ? detailJson : "null", null);
+    }
+
+    /**
+     * Like {@link #dispatchJson(String, String)}, running onDelivered on the main thread once the
+     * event has been handed to the page. Used to time scenarios end to end.
+     */
+    public void dispatchJson(String eventName, String detailJson, Runnable onDelivered) {
+        enqueue(eventName, detailJson != null ? detailJson : "null", onDelivered);
+    }
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    private void enqueue(String eventName, String detailJson, Runnable onDelivered) {
+        synchronized (this) {
+            if (pending.size() >= MAX_QUEUED_EVENTS) {
+                Event dropped = pending.pollFirst();
+                EVENTS_DROPPED.increment();
+                Log.w(TAG, "Web event queue full, dropping " + dropped.name);
+            }
+            pending.addLast(new Event(eventName, detailJson, onDelivered));
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushScheduled || attachedWebView() == null || pending.isEmpty()) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        mainHandler.post(scheduleFrame);
+    }
+
+    private void flush() {
+        WebView target;
+        long oldestQueuedAt = Long.MAX_VALUE;
+        int count = 0;
+        script.setLength(0);
+
+        synchronized (this) {
+            flushScheduled = false;
+            target = attachedWebView();
+            if (target == null) {
+                return;
+            }
+            Event event;
+            while ((event = pending.pollFirst()) != null) {
+                script.append("window.dispatchEvent(new CustomEvent(")
+                    .append(JSONObject.quote(event.name))
+                    .append(", { detail: ")
+                    .append(event.detailJson)
+                    .append(" }));");
+                oldestQueuedAt = Math.min(oldestQueuedAt, event.queuedAt);
+                if (event.onDelivered != null) {
+                    delivered.add(event.onDelivered);
+                }
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+        target.evaluateJavascript(script.toString(), null);
+        for (int i = 0; i < delivered.size(); i++) {
+            delivered.get(i).run();
+        }
+        delivered.clear();
+
+        long latency = SystemClock.elapsedRealtime() - oldestQueuedAt;
+        DISPATCH_LATENCY_MS.record(latency);
+        EVENTS_DISPATCHED.add(count);
+        Log.d(TAG, "Dispatched " + count + " web event(s), oldest waited " + latency + "ms");
+    }
+}
@@ -0,0 +1,452 @@
+package com.livenzo.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU disk cache for WebView subresources, consulted from shouldInterceptRequest.
+ * Only GETs on known routes are cached; each route either pins its own lifetime (immutable
+ * storage objects) or follows the server's Cache-Control. Bodies without a Content-Length or
+ * larger than one entry are streamed through uncached. Everything else goes to the network
+ * untouched.
+ */
+public final class WebResourceCache {
+    private static final String TAG = "LIVENZO_NET";
+    private static final String DIR_NAME = "web_cache";
+    private static final long MAX_BYTES = 50 * 1024 * 1024L;
+    private static final int MAX_ENTRY_BYTES = 5 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    // Route lifetime meaning "use the server's Cache-Control"
+    private static final long FOLLOW_SERVER = -1L;
+
+    private static final class Route {
+        final String name;
+        final String host;
+        final String pathPrefix;
+        final long maxAgeMs;
+        final Metrics.Counter hits;
+        final Metrics.Counter misses;
+
+        Route(String name, String host, String pathPrefix, long maxAgeMs) {
+            this.name = name;
+            this.host = host;
+            this.pathPrefix = pathPrefix;
+            this.maxAgeMs = maxAgeMs;
+            this.hits = Metrics.counter("web_cache." + name + ".hits");
+            this.misses = Metrics.counter("web_cache." + name + ".misses");
+        }
+
+        boolean matches(Uri uri) {
+            String path = uri.getPath();
+            return host.equalsIgnoreCase(uri.getHost()) && path != null && path.startsWith(pathPrefix);
+        }
+    }
+
+    private static final Route[] ROUTES = {
+        // Uploads get unique timestamped names and are never rewritten, so they can live for a month
+        new Route("storage_object", Uri.parse(BuildConfig.SUPABASE_API_URL).getHost(), "/storage/v1/object/public/", 30 * DAY_MS),
+        new Route("storage_render", Uri.parse(BuildConfig.SUPABASE_API_URL).getHost(), "/storage/v1/render/image/public/", 30 * DAY_MS),
+        // Map tiles and static maps: Google's own caching headers apply
+        new Route("maps_tiles", "maps.googleapis.com", "/maps/vt", FOLLOW_SERVER),
+        new Route("maps_static", "maps.googleapis.com", "/maps/api/staticmap", FOLLOW_SERVER),
+        new Route("maps_gstatic", "maps.gstatic.com", "/", FOLLOW_SERVER),
+    };
+
+    private static final Metrics.Counter REVALIDATED = Metrics.counter("web_cache.revalidated");
+    private static final Metrics.Gauge CACHED_BYTES = Metrics.gauge("web_cache.bytes");
+
+    private static volatile WebResourceCache instance;
+
+    private final File dir;
+    // Access-ordered index of file name to size; eldest entries are evicted first
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private WebResourceCache(Context context) {
+        dir = new File(context.getCacheDir(), DIR_NAME);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create web cache dir");
+        }
+        loadIndex();
+    }
+
+    public static WebResourceCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (WebResourceCache.class) {
+                if (instance == null) {
+                    instance = new WebResourceCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a response for cacheable requests (from disk, or fetched and stored), or null to let
+     * the WebView load the request itself. Runs on WebView's IO threads, so blocking is fine.
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || request.isForMainFrame()) {
+            return null;
+        }
+        Map<String, String> requestHeaders = request.getRequestHeaders();
+        if (requestHeaders != null && (requestHeaders.containsKey("Range") || requestHeaders.containsKey("range"))) {
+            // Partial content (video seeking) is left to the WebView
+            return null;
+        }
+        Uri uri = request.getUrl();
+        Route route = routeFor(uri);
+        if (route == null) {
+            return null;
+        }
+
+        String url = uri.toString();
+        String name = fileName(url);
+        Entry cached = read(name);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            route.hits.increment();
+            return cached.toResponse();
+        }
+
+        route.misses.increment();
+        try {
+            return fetch(route, url, name, requestHeaders, cached);
+        } catch (IOException e) {
+            Log.w(TAG, "Web cache fetch failed for " + route.name + ", falling back to WebView", e);
+            // Stale beats nothing when offline
+            return cached != null ? cached.toResponse() : null;
+        }
+    }
+
+    private WebResourceResponse fetch(Route route, String url, String name, Map<String, String> requestHeaders,
+                                      Entry stale) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        if (requestHeaders != null) {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        if (stale != null && stale.etag != null) {
+            conn.setRequestProperty("If-None-Match", stale.etag);
+        }
+
+        int code = conn.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && stale != null) {
+            drain(conn.getInputStream());
+            REVALIDATED.increment();
+            Entry refreshed = new Entry(stale.mimeType, stale.encoding, stale.etag, stale.headers,
+                expiresAt(route, conn.getHeaderField("Cache-Control")), stale.body);
+            write(name, refreshed);
+            return refreshed.toResponse();
+        }
+        if (code != HttpURLConnection.HTTP_OK) {
+            drain(code >= 400 ? conn.getErrorStream() : conn.getInputStream());
+            return null;
+        }
+
+        String contentType = conn.getContentType();
+        String mimeType = contentType;
+        String encoding = null;
+        if (contentType != null && contentType.contains(";")) {
+            mimeType = contentType.substring(0, contentType.indexOf(';')).trim();
+            int charset = contentType.toLowerCase(Locale.US).indexOf("charset=");
+            if (charset != -1) {
+                encoding = contentType.substring(charset + "charset=".length()).trim();
+            }
+        }
+        Map<String, String> headers = replayableHeaders(conn);
+        long length = contentLength(conn);
+        if (length < 0 || length > MAX_ENTRY_BYTES) {
+            // Videos, PDFs and bodies of unknown size are never buffered; the WebView reads the
+            // connection directly
+            return new WebResourceResponse(mimeType, encoding, 200, "OK", headers, conn.getInputStream());
+        }
+        Entry entry = new Entry(mimeType, encoding, conn.getHeaderField("ETag"), headers,
+            expiresAt(route, conn.getHeaderField("Cache-Control")), readBody(conn.getInputStream()));
+        if (entry.expiresAt > System.currentTimeMillis()) {
+            write(name, entry);
+        }
+        return entry.toResponse();
+    }
+
+    private static long expiresAt(Route route, String cacheControl) {
+        long now = System.currentTimeMillis();
+        if (route.maxAgeMs != FOLLOW_SERVER) {
+            return now + route.maxAgeMs;
+        }
+        if (cacheControl == null) {
+            return now;
+        }
+        String directives = cacheControl.toLowerCase(Locale.US);
+        if (directives.contains("no-store") || directives.contains("no-cache") || directives.contains("private")) {
+            return now;
+        }
+        int at = directives.indexOf("max-age=");
+        if (at == -1) {
+            return now;
+        }
+        int end = at + "max-age=".length();
+        while (end < directives.length() && Character.isDigit(directives.charAt(end))) {
+            end++;
+        }
+        try {
+            return now + Long.parseLong(directives.substring(at + "max-age=".length(), end)) * 1000L;
+        } catch (NumberFormatException e) {
+            return now;
+        }
+    }
+
+    private static long contentLength(HttpURLConnection conn) {
+        // getContentLengthLong needs API 24
+        String value = conn.getHeaderField("Content-Length");
+        if (value == null) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static Map<String, String> replayableHeaders(HttpURLConnection conn) {
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : conn.getHeaderFields().entrySet()) {
+            String key = header.getKey();
+            if (key == null || header.getValue().isEmpty()) {
+                continue;
+            }
+            String lower = key.toLowerCase(Locale.US);
+            // The body is stored decoded and served whole; cookies never belong in a shared cache
+            if (lower.equals("content-encoding") || lower.equals("content-length") || lower.equals("transfer-encoding")
+                    || lower.equals("connection") || lower.equals("set-cookie") || lower.startsWith("x-android")) {
+                continue;
+            }
+            headers.put(key, header.getValue().get(0));
+        }
+        return headers;
+    }
+
+    private static Route routeFor(Uri uri) {
+        if (!"https".equals(uri.getScheme())) {
+            return null;
+        }
+        for (Route route : ROUTES) {
+            if (route.matches(uri)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private static final class Entry {
+        final String mimeType;
+        final String encoding;
+        final String etag;
+        final Map<String, String> headers;
+        final long expiresAt;
+        final byte[] body;
+
+        Entry(String mimeType, String encoding, String etag, Map<String, String> headers, long expiresAt, byte[] body) {
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.etag = etag;
+            this.headers = headers;
+            this.expiresAt = expiresAt;
+            this.body = body;
+        }
+
+        WebResourceResponse toResponse() {
+            return new WebResourceResponse(mimeType, encoding, 200, "OK", headers, new ByteArrayInputStream(body));
+        }
+    }
+
+    private synchronized Entry read(String name) {
+        // get, not containsKey, so the hit counts as an access and moves to the young end
+        if (index.get(name) == null) {
+            return null;
+        }
+        File file = new File(dir, name);
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                JSONObject meta = new JSONObject(in.readUTF());
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                Map<String, String> headers = new HashMap<>();
+                JSONObject headersJson = meta.optJSONObject("headers");
+                if (headersJson != null) {
+                    Iterator<String> keys = headersJson.keys();
+                    while (keys.hasNext()) {
+                        String key = keys.next();
+                        headers.put(key, headersJson.optString(key));
+                    }
+                }
+                // Refresh recency across restarts, where the index is rebuilt from mtimes
+                file.setLastModified(System.currentTimeMillis());
+                return new Entry(
+                    meta.isNull("mime") ? null : meta.optString("mime"),
+                    meta.isNull("encoding") ? null : meta.optString("encoding"),
+                    meta.isNull("etag") ? null : meta.optString("etag"),
+                    headers,
+                    meta.optLong("expires_at"),
+                    body);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            remove(name);
+            return null;
+        }
+    }
+
+    private synchronized void write(String name, Entry entry) {
+        File tmp = new File(dir, name + ".tmp");
+        try {
+            JSONObject meta = new JSONObject();
+            meta.put("mime", entry.mimeType);
+            meta.put("encoding", entry.encoding);
+            meta.put("etag", entry.etag);
+            meta.put("headers", new JSONObject(entry.headers));
+            meta.put("expires_at", entry.expiresAt);
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+            try {
+                out.writeUTF(meta.toString());
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+            } finally {
+                out.close();
+            }
+            File file = new File(dir, name);
+            if (!tmp.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+            Long previous = index.put(name, file.length());
+            totalBytes += file.length() - (previous != null ? previous : 0L);
+            trimToSize();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to store web cache entry", e);
+            tmp.delete();
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > MAX_BYTES && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(dir, eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+        CACHED_BYTES.set(totalBytes);
+    }
+
+    private void remove(String name) {
+        Long size = index.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        new File(dir, name).delete();
+        CACHED_BYTES.set(totalBytes);
+    }
+
+    private void loadIndex() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            index.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+        trimToSize();
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                if (out.size() > MAX_ENTRY_BYTES) {
+                    // Content-Length lied; never hold more than one entry in memory
+                    throw new IOException("Body exceeded its Content-Length");
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        // Reading to the end returns the socket to the keep-alive pool
+        try {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String fileName(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            // SHA-1 is always available; keep a usable name regardless
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+}
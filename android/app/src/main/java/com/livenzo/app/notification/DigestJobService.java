@@ -0,0 +1,31 @@
+package com.livenzo.app.notification;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+import com.livenzo.app.NetworkExecutor;
+
+/**
+ * Runs when a digest window closes and posts the held notifications as one summary.
+ */
+public class DigestJobService extends JobService {
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        // Reading the store and posting is quick, but keep disk I/O off the main thread
+        if (NetworkExecutor.getInstance().submitBackground(null, "digest-flush", () -> {
+            NotificationDigest.getInstance(this).flush();
+            jobFinished(params, false);
+        }) == null) {
+            // Background lane is full; let JobScheduler retry with backoff
+            jobFinished(params, true);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The store is persistent; the next push or window picks it up
+        return true;
+    }
+}
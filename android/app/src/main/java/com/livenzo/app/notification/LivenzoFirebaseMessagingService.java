@@ -2,19 +2,21 @@ package com.livenzo.app.notification;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.Context;
-import android.content.Intent;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
-import androidx.core.app.NotificationCompat;
-
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
-import com.livenzo.app.MainActivity;
-import com.livenzo.app.R;
+import com.livenzo.app.Metrics;
+import com.livenzo.app.RealtimeClient;
+import com.livenzo.app.SessionState;
+import com.livenzo.app.TokenSyncEngine;
+import com.livenzo.app.WebEventBridge;
+
+import java.util.Map;
 
 public class LivenzoFirebaseMessagingService extends FirebaseMessagingService {
     private static final String TAG = "LIVENZO_DEBUG";
@@ -22,96 +24,108 @@ public class LivenzoFirebaseMessagingService extends FirebaseMessagingService {
     private static final String CHANNEL_NAME = "Livenzo Notifications";
     private static final String CHANNEL_DESCRIPTION = "Notifications for Livenzo app";
 
+    private static final Metrics.Counter PUSHES_RECEIVED = Metrics.counter("push.received");
+    private static final Metrics.Histogram HANDLE_MS = Metrics.histogram("push.on_message_received_ms", Metrics.LATENCY_BUCKETS_MS);
+    private static final Metrics.Histogram RECEIVED_TO_POSTED_MS = Metrics.histogram("scenario.push_to_posted_ms", Metrics.LATENCY_BUCKETS_MS);
+    private static final String RECEIVED_TO_POSTED_SCENARIO = "scenario.push_to_posted";
+    private static final Metrics.Counter TOKEN_ROTATIONS = Metrics.counter("push.token_rotations");
+
     @Override
     public void onCreate() {
         super.onCreate();
-        createNotificationChannel();
+        createNotificationChannel(this);
     }
 
     @Override
     public void onMessageReceived(RemoteMessage remoteMessage) {
         Log.d(TAG, "From: " + remoteMessage.getFrom());
+        RemoteMessage.Notification notification = remoteMessage.getNotification();
+        handleMessage(this, remoteMessage.getData(), notification != null,
+            notification != null ? notification.getTitle() : null,
+            notification != null ? notification.getBody() : null);
+    }
+
+    /**
+     * Everything onMessageReceived does once the message is unpacked. Benchmark builds also
+     * feed synthetic pushes through here, in place of FCM.
+     */
+    static void handleMessage(Context context, Map<String, String> data, boolean hasNotification,
+                              String notificationTitle, String notificationBody) {
+        long startedAt = SystemClock.elapsedRealtime();
+        int scenario = Metrics.beginScenario(RECEIVED_TO_POSTED_SCENARIO);
+        PUSHES_RECEIVED.increment();
+        Metrics.incrementDaily(context, "push.received");
 
         // Check if message contains a data payload
-        if (remoteMessage.getData().size() > 0) {
-            Log.d(TAG, "Message data payload: " + remoteMessage.getData());
+        if (data.size() > 0) {
+            Log.d(TAG, "Message data payload: " + data);
+        }
+
+        // The open chat already has this message over realtime
+        if (RealtimeClient.getInstance(context).shouldSuppress(data)) {
+            Log.d(TAG, "Chat is open in the foreground, suppressing notification");
+            Metrics.endScenario(RECEIVED_TO_POSTED_SCENARIO, scenario);
+            HANDLE_MS.record(SystemClock.elapsedRealtime() - startedAt);
+            return;
         }
 
         // Check if message contains a notification payload
-        if (remoteMessage.getNotification() != null) {
-            Log.d(TAG, "Message Notification Body: " + remoteMessage.getNotification().getBody());
-            showNotification(
-                remoteMessage.getNotification().getTitle(),
-                remoteMessage.getNotification().getBody(),
-                remoteMessage.getData()
-            );
+        if (hasNotification) {
+            Log.d(TAG, "Message Notification Body: " + notificationBody);
+            showNotification(context, NotificationPayload.fromMessage(data, notificationTitle, notificationBody),
+                data.get("digest"), startedAt);
         } else {
             // Handle data-only messages (FCM v1 recommended for reliability)
-            String dataTitle = remoteMessage.getData().get("title");
-            String dataBody = remoteMessage.getData().get("body");
+            String dataTitle = data.get("title");
+            String dataBody = data.get("body");
             if (dataTitle != null || dataBody != null) {
                 Log.d(TAG, "Data-only message received. Showing notification.");
-                showNotification(dataTitle, dataBody, remoteMessage.getData());
+                showNotification(context, NotificationPayload.fromMessage(data, dataTitle, dataBody),
+                    data.get("digest"), startedAt);
             } else {
                 Log.d(TAG, "Data-only message without title/body payload. Skipping notification display.");
             }
         }
+        Metrics.endScenario(RECEIVED_TO_POSTED_SCENARIO, scenario);
+
+        // Warm the cache for the screen this notification opens
+        PushPrefetcher.prefetch(context, data);
+        HANDLE_MS.record(SystemClock.elapsedRealtime() - startedAt);
     }
 
     @Override
     public void onNewToken(String token) {
         Log.d(TAG, "Refreshed token: " + token);
+        TOKEN_ROTATIONS.increment();
         
         // Send token to app's WebView
-        if (MainActivity.webViewInstance != null) {
-            MainActivity.webViewInstance.post(() -> {
-                MainActivity.webViewInstance.evaluateJavascript(
-                    "window.dispatchEvent(new CustomEvent('fcmTokenUpdated', { detail: '" + token + "' }));",
-                    null
-                );
-            });
-        }
+        WebEventBridge.getInstance().dispatch("fcmTokenUpdated", token);
         
         // Store token for WebView access
         getSharedPreferences("livenzo_prefs", MODE_PRIVATE)
             .edit()
             .putString("fcm_token", token)
             .apply();
-    }
+        SessionState.getInstance(this).onFcmToken(token);
 
-    private void showNotification(String title, String body, java.util.Map<String, String> data) {
-        Intent intent = new Intent(this, MainActivity.class);
-        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        
-        // Add data to intent
-        for (java.util.Map.Entry<String, String> entry : data.entrySet()) {
-            intent.putExtra(entry.getKey(), entry.getValue());
+        // Push the rotated token to the server for the signed-in user
+        SessionState.Snapshot session = SessionState.getInstance(this).get();
+        if (session.isLoggedIn()) {
+            TokenSyncEngine.getInstance(this).requestSync(session.uid, session.phone, token);
         }
+    }
 
-        PendingIntent pendingIntent = PendingIntent.getActivity(
-            this, 
-            0, 
-            intent, 
-            PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        NotificationCompat.Builder notificationBuilder =
-            new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setSmallIcon(R.drawable.notification_icon)
-                .setContentTitle(title != null ? title : "Livenzo")
-                .setContentText(body != null ? body : "New notification")
-                .setAutoCancel(true)
-                .setContentIntent(pendingIntent)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setDefaults(NotificationCompat.DEFAULT_ALL);
-
-        NotificationManager notificationManager =
-            (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-
-        notificationManager.notify(0, notificationBuilder.build());
+    private static void showNotification(Context context, NotificationPayload payload, String digestHint, long receivedAt) {
+        // Held for the next summary when digest mode is on and the push is low priority
+        if (NotificationDigest.getInstance(context).offer(payload, digestHint)) {
+            return;
+        }
+        // Grouped per conversation with per-thread IDs and alert rate limiting
+        NotificationEngine.getInstance().show(context, CHANNEL_ID, payload);
+        RECEIVED_TO_POSTED_MS.record(SystemClock.elapsedRealtime() - receivedAt);
     }
 
-    private void createNotificationChannel() {
+    static void createNotificationChannel(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
                 CHANNEL_ID,
@@ -122,8 +136,8 @@ public class LivenzoFirebaseMessagingService extends FirebaseMessagingService {
             channel.enableLights(true);
             channel.enableVibration(true);
 
-            NotificationManager notificationManager = getSystemService(NotificationManager.class);
+            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
             notificationManager.createNotificationChannel(channel);
         }
     }
-}
\ No newline at end of file
+}
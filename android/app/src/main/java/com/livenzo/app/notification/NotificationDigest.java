@@ -0,0 +1,254 @@
+package com.livenzo.app.notification;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.livenzo.app.Metrics;
+
+import org.json.JSONArray;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in digest mode. Low-priority pushes are held in a small file-backed store and posted as one
+ * summary when a JobScheduler window closes, instead of each one waking the device at high
+ * importance. Chat messages are never held unless the server marks them with digest=true.
+ */
+public final class NotificationDigest {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final String PREFS = "livenzo_notifications";
+    private static final String KEY_ENABLED = "digest_enabled";
+    private static final String KEY_WINDOW_MINUTES = "digest_window_minutes";
+    private static final String STORE_FILE = "notification_digest.json";
+    private static final int DEFAULT_WINDOW_MINUTES = 30;
+    private static final int MAX_PENDING = 50;
+    // Lets the scheduler batch the flush with other work
+    private static final long DEADLINE_SLACK_MS = 5 * 60 * 1000L;
+    static final int JOB_ID = 0x11E0;
+
+    private static final Set<String> LOW_PRIORITY_TYPES = new HashSet<>(Arrays.asList("notice", "document", "complaint"));
+
+    private static final Metrics.Counter DIGESTED = Metrics.counter("push.digested");
+    private static final Metrics.Counter DIGEST_FLUSHES = Metrics.counter("push.digest_flushes");
+
+    private static volatile NotificationDigest instance;
+
+    private final Context context;
+    private final File file;
+    // Writes are fsync'd, so they stay off the callers' threads (offer runs on FCM's delivery thread)
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "livenzo-digest-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Guarded by this
+    private final List<NotificationPayload> pending = new ArrayList<>();
+    private long oldestPendingAt;
+    private boolean persistPending;
+
+    private NotificationDigest(Context context) {
+        this.context = context;
+        this.file = new File(context.getFilesDir(), STORE_FILE);
+        load();
+    }
+
+    public static NotificationDigest getInstance(Context context) {
+        if (instance == null) {
+            synchronized (NotificationDigest.class) {
+                if (instance == null) {
+                    instance = new NotificationDigest(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void setEnabled(boolean enabled, int windowMinutes) {
+        prefs().edit()
+            .putBoolean(KEY_ENABLED, enabled)
+            .putInt(KEY_WINDOW_MINUTES, windowMinutes > 0 ? windowMinutes : DEFAULT_WINDOW_MINUTES)
+            .apply();
+        if (!enabled) {
+            // Don't strand anything that was held while the mode was on
+            flush();
+        }
+        Log.d(TAG, "Notification digest " + (enabled ? "enabled" : "disabled"));
+    }
+
+    public boolean isEnabled() {
+        return prefs().getBoolean(KEY_ENABLED, false);
+    }
+
+    /**
+     * Holds the payload for the next digest when it qualifies. Returns false when it should be
+     * shown right away.
+     */
+    public boolean offer(NotificationPayload payload, String digestHint) {
+        if (!isEnabled()) {
+            return false;
+        }
+        // The server can force either way per message; otherwise fall back to the type
+        boolean digest = digestHint != null ? Boolean.parseBoolean(digestHint) : LOW_PRIORITY_TYPES.contains(payload.type);
+        if (!digest) {
+            return false;
+        }
+
+        long windowMs = windowMillis();
+        boolean schedule;
+        boolean overdue;
+        synchronized (this) {
+            schedule = pending.isEmpty();
+            if (schedule) {
+                oldestPendingAt = System.currentTimeMillis();
+            }
+            pending.add(payload);
+            while (pending.size() > MAX_PENDING) {
+                pending.remove(0);
+            }
+            persist();
+            // A job lost to a reboot or force-stop would otherwise leave the store stuck
+            overdue = System.currentTimeMillis() - oldestPendingAt > windowMs + DEADLINE_SLACK_MS;
+        }
+        DIGESTED.increment();
+
+        if (overdue) {
+            flush();
+        } else if (schedule) {
+            scheduleFlush(windowMs);
+        }
+        return true;
+    }
+
+    /**
+     * Posts everything pending as one summary notification and empties the store.
+     */
+    public void flush() {
+        List<NotificationPayload> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            persist();
+        }
+        DIGEST_FLUSHES.increment();
+        NotificationEngine.getInstance().showDigest(context, batch);
+        Log.d(TAG, "Flushed notification digest with " + batch.size() + " item(s)");
+    }
+
+    /**
+     * Re-arms the flush for items held before the process died; JobScheduler jobs do not survive a
+     * reboot without RECEIVE_BOOT_COMPLETED.
+     */
+    public void reschedulePending() {
+        long remainingMs;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            remainingMs = Math.max(0L, oldestPendingAt + windowMillis() - System.currentTimeMillis());
+        }
+        scheduleFlush(remainingMs);
+    }
+
+    private void scheduleFlush(long windowMs) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, DigestJobService.class))
+            .setMinimumLatency(windowMs)
+            .setOverrideDeadline(windowMs + DEADLINE_SLACK_MS)
+            .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Could not schedule digest flush, flushing now");
+            flush();
+        }
+    }
+
+    private long windowMillis() {
+        return prefs().getInt(KEY_WINDOW_MINUTES, DEFAULT_WINDOW_MINUTES) * 60 * 1000L;
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            byte[] data = new byte[(int) file.length()];
+            FileInputStream in = new FileInputStream(file);
+            try {
+                int offset = 0;
+                while (offset < data.length) {
+                    int read = in.read(data, offset, data.length - offset);
+                    if (read == -1) {
+                        break;
+                    }
+                    offset += read;
+                }
+            } finally {
+                in.close();
+            }
+            JSONArray array = new JSONArray(new String(data, "UTF-8"));
+            for (int i = 0; i < array.length(); i++) {
+                pending.add(NotificationPayload.fromStoreJson(array.getJSONObject(i)));
+            }
+            if (!pending.isEmpty()) {
+                oldestPendingAt = pending.get(0).receivedAt;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read notification digest, starting empty", e);
+            pending.clear();
+        }
+    }
+
+    // Called with the lock held; back-to-back changes collapse into one write of the latest state
+    private void persist() {
+        if (persistPending) {
+            return;
+        }
+        persistPending = true;
+        writer.execute(this::writeSnapshot);
+    }
+
+    private void writeSnapshot() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            JSONArray array = new JSONArray();
+            synchronized (this) {
+                persistPending = false;
+                for (NotificationPayload payload : pending) {
+                    array.put(payload.toStoreJson());
+                }
+            }
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(array.toString().getBytes("UTF-8"));
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist notification digest", e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.livenzo.app.notification;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import com.livenzo.app.MainActivity;
+import com.livenzo.app.R;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Posts one notification per conversation (chat relationship, owner notices, document thread)
+ * instead of a single slot that every push overwrites. Each thread keeps a short history so its
+ * InboxStyle summary can be rebuilt, and sound/vibration is rate-limited per thread.
+ */
+public final class NotificationEngine {
+    private static final String TAG = "LIVENZO_DEBUG";
+    private static final int MAX_THREADS = 20;
+    private static final int MAX_LINES_PER_THREAD = 6;
+    private static final long ALERT_WINDOW_MS = 30_000L;
+    private static final String GROUP_PREFIX = "livenzo_";
+    private static final String DIGEST_CHANNEL_ID = "livenzo_digest";
+    private static final String DIGEST_CHANNEL_NAME = "Livenzo Digest";
+
+    private static final class Line {
+        final String title;
+        final String body;
+
+        Line(String title, String body) {
+            this.title = title;
+            this.body = body;
+        }
+    }
+
+    private static final class Conversation {
+        final String key;
+        final String type;
+        final ArrayDeque<Line> lines = new ArrayDeque<>();
+        int total;
+        long lastAlertAt = -ALERT_WINDOW_MS;
+
+        Conversation(String key, String type) {
+            this.key = key;
+            this.type = type;
+        }
+    }
+
+    private static final NotificationEngine INSTANCE = new NotificationEngine();
+
+    // Access-ordered so the least recently active thread is evicted first
+    private final LinkedHashMap<String, Conversation> threads = new LinkedHashMap<String, Conversation>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+            return size() > MAX_THREADS;
+        }
+    };
+
+    // Tells apart digests flushed within the same millisecond
+    private final AtomicInteger digestSequence = new AtomicInteger();
+
+    private NotificationEngine() {
+    }
+
+    public static NotificationEngine getInstance() {
+        return INSTANCE;
+    }
+
+    public static String threadKey(Map<String, String> data) {
+        return threadKey(data.get("type"), data.get("relationship_id"), data.get("owner_id"), data.get("sender_id"));
+    }
+
+    public static String threadKey(Bundle extras) {
+        return threadKey(extras.getString("type"), extras.getString("relationship_id"),
+            extras.getString("owner_id"), extras.getString("sender_id"));
+    }
+
+    private static String threadKey(String type, String relationshipId, String ownerId, String senderId) {
+        String safeType = type != null ? type : "general";
+        if (relationshipId != null) {
+            return safeType + ":" + relationshipId;
+        }
+        if (ownerId != null) {
+            return safeType + ":" + ownerId;
+        }
+        if (senderId != null) {
+            return safeType + ":" + senderId;
+        }
+        return safeType;
+    }
+
+    public static int notificationId(String threadKey) {
+        // Keep clear of 0, which FCM uses for its own auto-displayed notifications
+        int id = threadKey.hashCode() & 0x7fffffff;
+        return id == 0 ? 1 : id;
+    }
+
+    public void show(Context context, String channelId, NotificationPayload payload) {
+        String key = payload.threadKey;
+        String type = payload.type;
+        String safeTitle = payload.title != null ? payload.title : "Livenzo";
+        String safeBody = payload.body != null ? payload.body : "New notification";
+        long now = SystemClock.elapsedRealtime();
+
+        Conversation thread;
+        boolean alert;
+        int activeInGroup;
+        synchronized (threads) {
+            thread = threads.get(key);
+            if (thread == null) {
+                thread = new Conversation(key, type);
+                threads.put(key, thread);
+            }
+            thread.lines.addLast(new Line(safeTitle, safeBody));
+            while (thread.lines.size() > MAX_LINES_PER_THREAD) {
+                thread.lines.pollFirst();
+            }
+            thread.total++;
+
+            alert = now - thread.lastAlertAt >= ALERT_WINDOW_MS;
+            if (alert) {
+                thread.lastAlertAt = now;
+            }
+            activeInGroup = countThreads(type);
+        }
+
+        int id = notificationId(key);
+        NotificationManager notificationManager =
+            (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(id, buildThreadNotification(context, channelId, thread, id, payload, alert));
+
+        if (activeInGroup > 1) {
+            notificationManager.notify(notificationId(GROUP_PREFIX + type), buildGroupSummary(context, channelId, type));
+        }
+        Log.d(TAG, "Posted notification for " + key + " (alert=" + alert + ")");
+    }
+
+    /**
+     * Posts held low-priority pushes as a single quiet summary. Tapping it opens the most recent one.
+     * Each flush gets its own id, so an unread earlier digest stays in the tray next to it.
+     */
+    public void showDigest(Context context, List<NotificationPayload> batch) {
+        NotificationManager notificationManager =
+            (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            notificationManager.createNotificationChannel(new NotificationChannel(
+                DIGEST_CHANNEL_ID, DIGEST_CHANNEL_NAME, NotificationManager.IMPORTANCE_LOW));
+        }
+
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        int shown = 0;
+        for (int i = batch.size() - 1; i >= 0 && shown < MAX_LINES_PER_THREAD; i--, shown++) {
+            NotificationPayload payload = batch.get(i);
+            style.addLine((payload.title != null ? payload.title : "Livenzo") + ": "
+                + (payload.body != null ? payload.body : "New notification"));
+        }
+        String summary = batch.size() + " updates";
+        style.setSummaryText(summary);
+
+        int id = notificationId(GROUP_PREFIX + "digest:" + System.currentTimeMillis() + ":" + digestSequence.incrementAndGet());
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        intent.putExtra(NotificationPayload.EXTRA, batch.get(batch.size() - 1));
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+            context,
+            id,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        notificationManager.notify(id, new NotificationCompat.Builder(context, DIGEST_CHANNEL_ID)
+            .setSmallIcon(R.drawable.notification_icon)
+            .setContentTitle("Livenzo")
+            .setContentText(summary)
+            .setStyle(style)
+            .setNumber(batch.size())
+            .setGroup(GROUP_PREFIX + "digest")
+            .setContentIntent(pendingIntent)
+            .setAutoCancel(true)
+            .setPriority(NotificationCompat.PRIORITY_LOW)
+            .setSilent(true)
+            .build());
+    }
+
+    /**
+     * Forgets a thread once the user opens it so the next message starts a fresh summary.
+     */
+    public void onThreadOpened(Context context, String threadKey) {
+        Conversation removed;
+        int remaining;
+        synchronized (threads) {
+            removed = threads.remove(threadKey);
+            remaining = removed != null ? countThreads(removed.type) : 0;
+        }
+        if (removed != null && remaining == 0) {
+            NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager.cancel(notificationId(GROUP_PREFIX + removed.type));
+        }
+    }
+
+    private Notification buildThreadNotification(Context context, String channelId, Conversation thread, int id,
+                                                 NotificationPayload payload, boolean alert) {
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        intent.putExtra(NotificationPayload.EXTRA, payload);
+
+        // Request code per thread so taps on different threads keep their own extras
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+            context,
+            id,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        Line latest;
+        int lineCount;
+        synchronized (threads) {
+            latest = thread.lines.peekLast();
+            lineCount = thread.total;
+            for (Line line : thread.lines) {
+                style.addLine(line.title + ": " + line.body);
+            }
+        }
+        if (lineCount > 1) {
+            style.setSummaryText(lineCount + " new");
+        }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, channelId)
+            .setSmallIcon(R.drawable.notification_icon)
+            .setContentTitle(latest.title)
+            .setContentText(latest.body)
+            .setAutoCancel(true)
+            .setContentIntent(pendingIntent)
+            .setGroup(GROUP_PREFIX + thread.type)
+            .setNumber(lineCount)
+            .setStyle(style);
+
+        if (alert) {
+            builder.setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setDefaults(NotificationCompat.DEFAULT_ALL);
+        } else {
+            // Update the shade quietly; the thread already alerted within the window
+            builder.setPriority(NotificationCompat.PRIORITY_DEFAULT)
+                .setSilent(true);
+        }
+        return builder.build();
+    }
+
+    private Notification buildGroupSummary(Context context, String channelId, String type) {
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        int count = 0;
+        synchronized (threads) {
+            for (Conversation thread : threads.values()) {
+                if (thread.type.equals(type) && !thread.lines.isEmpty()) {
+                    Line latest = thread.lines.peekLast();
+                    style.addLine(latest.title + ": " + latest.body);
+                    count++;
+                }
+            }
+        }
+        style.setSummaryText(count + " updates");
+
+        return new NotificationCompat.Builder(context, channelId)
+            .setSmallIcon(R.drawable.notification_icon)
+            .setContentTitle("Livenzo")
+            .setContentText(count + " updates")
+            .setStyle(style)
+            .setGroup(GROUP_PREFIX + type)
+            .setGroupSummary(true)
+            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN)
+            .setAutoCancel(true)
+            .setSilent(true)
+            .build();
+    }
+
+    private int countThreads(String type) {
+        int count = 0;
+        Iterator<Conversation> it = threads.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().type.equals(type)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,127 @@
+package com.livenzo.app.notification;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * A push parsed once in {@link LivenzoFirebaseMessagingService} and carried to the activity as a
+ * single parcelable extra. The JSON handed to the web app is built at parse time, off the main
+ * thread, so a tap only has to unparcel a few strings.
+ */
+public final class NotificationPayload implements Parcelable {
+    public static final String EXTRA = "com.livenzo.app.NOTIFICATION_PAYLOAD";
+
+    public final String type;
+    public final String threadKey;
+    public final String title;
+    public final String body;
+    public final long receivedAt;
+    // Every data key as a string, in the shape the web app already expects
+    public final String json;
+
+    private NotificationPayload(String type, String threadKey, String title, String body, long receivedAt, String json) {
+        this.type = type;
+        this.threadKey = threadKey;
+        this.title = title;
+        this.body = body;
+        this.receivedAt = receivedAt;
+        this.json = json;
+    }
+
+    public static NotificationPayload fromMessage(Map<String, String> data, String title, String body) {
+        JSONObject json = new JSONObject(data);
+        return new NotificationPayload(
+            data.get("type") != null ? data.get("type") : "general",
+            NotificationEngine.threadKey(data),
+            title,
+            body,
+            System.currentTimeMillis(),
+            json.toString());
+    }
+
+    /**
+     * For taps on notifications FCM displayed itself while the app was in the background; those
+     * carry the data keys as plain string extras instead of our parcel.
+     */
+    public static NotificationPayload fromExtras(Bundle extras) {
+        JSONObject json = new JSONObject();
+        try {
+            for (String key : extras.keySet()) {
+                String value = extras.getString(key);
+                if (value != null) {
+                    json.put(key, value);
+                }
+            }
+        } catch (Exception e) {
+            // Only non-null string values are put, so this cannot happen
+        }
+        String type = extras.getString("type");
+        return new NotificationPayload(
+            type != null ? type : "general",
+            NotificationEngine.threadKey(extras),
+            null,
+            null,
+            System.currentTimeMillis(),
+            json.toString());
+    }
+
+    JSONObject toStoreJson() throws JSONException {
+        JSONObject stored = new JSONObject();
+        stored.put("type", type);
+        stored.put("thread_key", threadKey);
+        stored.put("title", title);
+        stored.put("body", body);
+        stored.put("received_at", receivedAt);
+        stored.put("json", json);
+        return stored;
+    }
+
+    static NotificationPayload fromStoreJson(JSONObject stored) {
+        return new NotificationPayload(
+            stored.optString("type", "general"),
+            stored.optString("thread_key", "general"),
+            stored.isNull("title") ? null : stored.optString("title"),
+            stored.isNull("body") ? null : stored.optString("body"),
+            stored.optLong("received_at"),
+            stored.optString("json", "{}"));
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(type);
+        dest.writeString(threadKey);
+        dest.writeString(title);
+        dest.writeString(body);
+        dest.writeLong(receivedAt);
+        dest.writeString(json);
+    }
+
+    public static final Creator<NotificationPayload> CREATOR = new Creator<NotificationPayload>() {
+        @Override
+        public NotificationPayload createFromParcel(Parcel source) {
+            return new NotificationPayload(
+                source.readString(),
+                source.readString(),
+                source.readString(),
+                source.readString(),
+                source.readLong(),
+                source.readString());
+        }
+
+        @Override
+        public NotificationPayload[] newArray(int size) {
+            return new NotificationPayload[size];
+        }
+    };
+}
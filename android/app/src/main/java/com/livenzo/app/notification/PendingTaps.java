@@ -0,0 +1,65 @@
+package com.livenzo.app.notification;
+
+/**
+ * Small ring buffer of notification taps the web app has not consumed yet. Two taps in quick
+ * succession (or one during a cold start, before JS is listening) are both kept instead of the
+ * second overwriting the first.
+ */
+public final class PendingTaps {
+    private static final int CAPACITY = 8;
+
+    private static final PendingTaps INSTANCE = new PendingTaps();
+
+    // Guarded by this
+    private final NotificationPayload[] taps = new NotificationPayload[CAPACITY];
+    private int head;
+    private int size;
+
+    private PendingTaps() {
+    }
+
+    public static PendingTaps getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void add(NotificationPayload payload) {
+        // Overwrites the oldest tap once full
+        taps[(head + size) % CAPACITY] = payload;
+        if (size < CAPACITY) {
+            size++;
+        } else {
+            head = (head + 1) % CAPACITY;
+        }
+    }
+
+    public synchronized NotificationPayload peekLatest() {
+        return size == 0 ? null : taps[(head + size - 1) % CAPACITY];
+    }
+
+    /**
+     * Removes every pending tap and returns them as a JSON array string, oldest first.
+     */
+    public synchronized String drainJson() {
+        StringBuilder json = new StringBuilder(64 + size * 256).append('[');
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % CAPACITY;
+            if (i > 0) {
+                json.append(',');
+            }
+            // Built with JSONObject when the push was parsed, so it can be spliced as-is
+            json.append(taps[index].json);
+            taps[index] = null;
+        }
+        head = 0;
+        size = 0;
+        return json.append(']').toString();
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            taps[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.livenzo.app.notification;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.livenzo.app.EntityCache;
+import com.livenzo.app.NativeHttpClient;
+import com.livenzo.app.NetworkExecutor;
+import com.livenzo.app.SessionState;
+
+import org.json.JSONArray;
+
+import java.net.URLEncoder;
+import java.util.Map;
+
+/**
+ * Fetches the row a push refers to and stores it in {@link EntityCache}, so the screen opened by
+ * tapping the notification can render before the web app reaches Supabase. Best effort: the fetch
+ * runs on the main network lane, ahead of bulk sync, and onMessageReceived does not wait for it.
+ */
+final class PushPrefetcher {
+    private static final String TAG = "LIVENZO_DEBUG";
+    // FCM keeps the process up for about 20s after delivery; a fetch that hasn't started well
+    // inside that would likely be frozen mid-request
+    private static final long START_DEADLINE_MS = 8_000L;
+
+    private PushPrefetcher() {
+    }
+
+    static void prefetch(Context context, Map<String, String> data) {
+        String type = data.get("type");
+        if (type == null) {
+            return;
+        }
+        final String table;
+        final String id;
+        switch (type) {
+            case "chat_message":
+                table = "chat_messages";
+                id = data.get("message_id");
+                break;
+            case "notice":
+                table = "notices";
+                id = data.get("notice_id");
+                break;
+            case "document":
+                table = "documents";
+                id = data.get("document_id");
+                break;
+            case "complaint":
+                table = "complaints";
+                id = data.get("complaint_id");
+                break;
+            default:
+                return;
+        }
+        if (id == null) {
+            return;
+        }
+
+        // These tables are behind RLS, so the fetch needs the user's Supabase session. In a process
+        // started by this push it is the one SessionState restored from before process death
+        final String accessToken = SessionState.getInstance(context).get().accessToken;
+        if (accessToken == null) {
+            Log.d(TAG, "No Supabase session available, skipping prefetch for " + type);
+            return;
+        }
+
+        final EntityCache cache = EntityCache.getInstance(context);
+        final long deadline = SystemClock.elapsedRealtime() + START_DEADLINE_MS;
+        NetworkExecutor.getInstance().submit(null, "push-prefetch", () -> {
+            if (SystemClock.elapsedRealtime() > deadline) {
+                Log.w(TAG, "Prefetch of " + type + " waited past its deadline, skipping");
+                return;
+            }
+            try {
+                NativeHttpClient.Response response = NativeHttpClient.getInstance()
+                    .getRest(table, "select=*&id=eq." + URLEncoder.encode(id, "UTF-8"), accessToken);
+                if (!response.isSuccessful()) {
+                    Log.w(TAG, "Prefetch of " + table + " returned " + response.code);
+                    return;
+                }
+                JSONArray rows = new JSONArray(response.body);
+                if (rows.length() > 0) {
+                    cache.put(type, id, rows.getJSONObject(0).toString());
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Prefetch of " + table + " failed", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Environment;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+
+@RunWith(RobolectricTestRunner.class)
+public class ContentSourcesTest {
+    private final Context context = RuntimeEnvironment.getApplication();
+
+    @Test
+    public void acceptsContentUrisFromOtherApps() throws Exception {
+        String picked = "content://com.android.providers.media.documents/document/image%3A42";
+        assertEquals(picked, ContentSources.parse(context, picked).toString());
+    }
+
+    @Test
+    public void acceptsCapacitorCameraOutput() throws Exception {
+        // CameraResultType.Uri hands back image.path as file://<external files>/Pictures/JPEG_*.jpg
+        File capture = touch(new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES),
+            "JPEG_20261016_101500_8123456789012345678.jpg"));
+        Uri uri = ContentSources.parse(context, Uri.fromFile(capture).toString());
+        assertEquals(capture.getCanonicalPath(), uri.getPath());
+
+        // Gallery picks are copied to the top of the cache dir
+        File picked = touch(new File(context.getCacheDir(), "IMG_20261016_101500.jpg"));
+        assertEquals(picked.getCanonicalPath(), ContentSources.parse(context, "file://" + picked.getPath()).getPath());
+    }
+
+    @Test
+    public void refusesFilesOutsideCameraOutput() throws Exception {
+        File pictures = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+        File webCache = new File(context.getCacheDir(), "web_cache");
+        assertTrue(webCache.isDirectory() || webCache.mkdirs());
+        String[] sources = {
+            "file://" + touch(new File(webCache, "tile.png")).getPath(),
+            "file://" + touch(new File(pictures, "notes.txt")).getPath(),
+            "file://" + pictures.getPath() + "/../../shared_prefs/livenzo_auth.jpg",
+            "file://" + pictures.getPath() + "/missing.jpg",
+            "file://" + touch(new File(context.getFilesDir(), "photo.jpg")).getPath(),
+        };
+        for (String source : sources) {
+            try {
+                ContentSources.parse(context, source);
+                fail("accepted " + source);
+            } catch (IOException expected) {
+                // Refused
+            }
+        }
+    }
+
+    @Test
+    public void refusesPathsFileUrisAndOwnProviders() {
+        String own = context.getPackageName();
+        String[] sources = {
+            "/data/data/" + own + "/shared_prefs/livenzo_auth.xml",
+            "file:///data/data/" + own + "/files/sync_outbox.json",
+            "content://" + own + ".fileprovider/cache/web_cache/index",
+            "content://" + own + "/files/uploads.json",
+            "https://example.com/photo.jpg",
+            "content:///no-authority",
+            null,
+        };
+        for (String source : sources) {
+            try {
+                ContentSources.parse(context, source);
+                fail("accepted " + source);
+            } catch (IOException expected) {
+                // Refused
+            }
+        }
+    }
+
+    @Test
+    public void encodesStoragePathSegments() throws Exception {
+        assertEquals("user-uploads/renter%201/meter%3F%23.jpg",
+            ImageUploader.encodePath("user-uploads/renter 1/meter?#.jpg"));
+        String[] invalid = {"bucket/../other/x.jpg", "bucket//x.jpg", "bucket/./x.jpg", "bucket/"};
+        for (String path : invalid) {
+            try {
+                ImageUploader.encodePath(path);
+                fail("accepted " + path);
+            } catch (IOException expected) {
+                // Refused
+            }
+        }
+    }
+
+    private static File touch(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        if (!file.exists() && !file.createNewFile()) {
+            throw new IOException("Cannot create " + file);
+        }
+        return file;
+    }
+}
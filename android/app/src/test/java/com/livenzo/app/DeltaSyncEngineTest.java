@@ -0,0 +1,260 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs pulls against a local stand-in for PostgREST that understands the handful of filters the
+ * engine sends. It serves the same rows whichever table is asked for.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DeltaSyncEngineTest {
+    private static final String OWNER = "owner-a";
+
+    private final Rooms rooms = new Rooms();
+    private StubHttpServer server;
+    private LocalStore store;
+    private DeltaSyncEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = RuntimeEnvironment.getApplication();
+        server = new StubHttpServer(rooms);
+        store = new LocalStore(context, null);
+        engine = new DeltaSyncEngine(context, store, new NativeHttpClient(server.url(""), server.url("/functions/v1")));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        server.close();
+    }
+
+    @Test
+    public void pullsOnlyTheSignedInOwnersRooms() throws Exception {
+        rooms.put(room("r1", OWNER, "2024-05-01T10:00:00+00:00"));
+        rooms.put(room("r2", "owner-b", "2024-05-01T11:00:00+00:00"));
+
+        assertEquals(1, engine.syncTable("rooms", token(OWNER)));
+
+        JSONArray local = new JSONArray(store.query("rooms", null, null, 0));
+        assertEquals(1, local.length());
+        assertEquals("r1", local.getJSONObject(0).getString("id"));
+        for (String query : rooms.queries) {
+            assertTrue(query, query.contains("owner_id=eq." + OWNER));
+        }
+    }
+
+    @Test
+    public void cappedFirstPullResumesOnTheNextRun() throws Exception {
+        int total = 20 * 200 + 150;
+        for (int i = 0; i < total; i++) {
+            rooms.put(room(String.format("r%05d", i), OWNER, "2024-05-01T10:00:00+00:00"));
+        }
+
+        assertEquals(20 * 200, engine.syncTable("rooms", token(OWNER)));
+        LocalStore.SyncCursor cursor = store.getCursor("rooms");
+        assertTrue(cursor.isBackfilling());
+        assertEquals(String.format("r%05d", 20 * 200 - 1), cursor.backfillId);
+
+        assertEquals(150, engine.syncTable("rooms", token(OWNER)));
+        assertFalse(store.getCursor("rooms").isBackfilling());
+        assertEquals(total, DatabaseUtils.queryNumEntries(store.getReadableDatabase(), "rooms"));
+    }
+
+    @Test
+    public void laterRunsPullOnlyChangesAndDropDeletedRooms() throws Exception {
+        rooms.put(room("r1", OWNER, "2024-05-01T10:00:00+00:00"));
+        rooms.put(room("r2", OWNER, "2024-05-01T10:00:00+00:00"));
+        rooms.put(room("r3", OWNER, "2024-05-01T10:00:00+00:00"));
+        engine.syncTable("rooms", token(OWNER));
+
+        // r2 is marked unavailable, r3 is deleted
+        rooms.put(room("r2", OWNER, "2024-05-02T09:00:00+00:00").put("available", false));
+        rooms.remove("r3");
+
+        assertEquals(1, engine.syncTable("rooms", token(OWNER)));
+
+        JSONArray available = new JSONArray(store.query("rooms", new JSONObject().put("available", true), null, 0));
+        assertEquals(1, available.length());
+        assertEquals("r1", available.getJSONObject(0).getString("id"));
+        assertEquals(2, new JSONArray(store.query("rooms", null, null, 0)).length());
+    }
+
+    @Test
+    public void editsMadeDuringAResumedFirstPullAreNotSkipped() throws Exception {
+        int total = 20 * 200 + 150;
+        for (int i = 0; i < total; i++) {
+            rooms.put(room(String.format("r%05d", i), OWNER, "2024-05-01T10:00:00+00:00"));
+        }
+        engine.syncTable("rooms", token(OWNER));
+
+        // Between the two runs an early row and a not-yet-pulled row are edited, the later one last
+        rooms.put(room("r00001", OWNER, "2024-05-02T10:00:00+00:00").put("price", 5000));
+        rooms.put(room("r04100", OWNER, "2024-05-03T10:00:00+00:00"));
+        engine.syncTable("rooms", token(OWNER));
+        LocalStore.SyncCursor cursor = store.getCursor("rooms");
+        assertEquals("2024-05-01T10:00:00+00:00", cursor.watermark);
+        assertEquals(String.format("r%05d", total - 1), cursor.id);
+
+        assertEquals(2, engine.syncTable("rooms", token(OWNER)));
+        JSONArray edited = new JSONArray(store.query("rooms", new JSONObject().put("price", 5000), null, 0));
+        assertEquals(1, edited.length());
+        assertEquals("r00001", edited.getJSONObject(0).getString("id"));
+    }
+
+    @Test
+    public void unscopedTablesDropDeletedRowsToo() throws Exception {
+        rooms.put(room("p1", OWNER, "2024-05-01T10:00:00+00:00"));
+        rooms.put(room("p2", OWNER, "2024-05-01T10:00:00+00:00"));
+        engine.syncTable("payments", token(OWNER));
+
+        rooms.remove("p2");
+        engine.syncTable("payments", token(OWNER));
+
+        assertEquals(1, DatabaseUtils.queryNumEntries(store.getReadableDatabase(), "payments"));
+    }
+
+    @Test
+    public void rowsWithoutUpdatedAtNeverStoreANullWatermark() throws Exception {
+        rooms.put(room("r1", OWNER, null));
+
+        engine.syncTable("rooms", token(OWNER));
+
+        LocalStore.SyncCursor cursor = store.getCursor("rooms");
+        assertEquals("2024-01-01T00:00:00+00:00", cursor.watermark);
+        assertNotNull(cursor.id);
+        engine.syncTable("rooms", token(OWNER));
+        String lastQuery = rooms.queries.get(rooms.queries.size() - 2);
+        assertFalse(lastQuery, lastQuery.contains("\"null\""));
+    }
+
+    @Test
+    public void anotherUserStartsFromScratch() throws Exception {
+        rooms.put(room("r1", OWNER, "2024-05-01T10:00:00+00:00"));
+        rooms.put(room("r2", "owner-b", "2024-04-01T10:00:00+00:00"));
+        engine.syncTable("rooms", token(OWNER));
+
+        assertEquals(1, engine.syncTable("rooms", token("owner-b")));
+
+        JSONArray local = new JSONArray(store.query("rooms", null, null, 0));
+        assertEquals(1, local.length());
+        assertEquals("r2", local.getJSONObject(0).getString("id"));
+        assertEquals("owner-b", store.getCursor("rooms").scope);
+    }
+
+    private static String token(String sub) throws Exception {
+        byte[] claims = new JSONObject().put("sub", sub).toString().getBytes("UTF-8");
+        return "header." + Base64.encodeToString(claims, Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP) + ".sig";
+    }
+
+    private static JSONObject room(String id, String ownerId, String updatedAt) throws Exception {
+        return new JSONObject()
+            .put("id", id)
+            .put("owner_id", ownerId)
+            .put("available", true)
+            .put("price", 4000)
+            .put("created_at", "2024-01-01T00:00:00+00:00")
+            .put("updated_at", updatedAt != null ? updatedAt : JSONObject.NULL);
+    }
+
+    /** Just enough PostgREST for GET /rest/v1/rooms with the filters the engine sends. */
+    private static final class Rooms implements StubHttpServer.Handler {
+        private static final Pattern KEYSET = Pattern.compile(
+            "\\(updated_at\\.gt\\.\"([^\"]*)\",and\\(updated_at\\.eq\\.\"([^\"]*)\",id\\.gt\\.\"([^\"]*)\"\\)\\)");
+
+        private final Map<String, JSONObject> rows = new TreeMap<>();
+        final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+
+        synchronized void put(JSONObject row) throws Exception {
+            rows.put(row.getString("id"), row);
+        }
+
+        synchronized void remove(String id) {
+            rows.remove(id);
+        }
+
+        @Override
+        public synchronized StubHttpServer.Response handle(StubHttpServer.Request request) throws Exception {
+            String target = request.path;
+            String query = target.substring(target.indexOf('?') + 1);
+            queries.add(URLDecoder.decode(query, "UTF-8"));
+            Map<String, String> params = new LinkedHashMap<>();
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+
+            List<JSONObject> matches = new ArrayList<>();
+            for (JSONObject row : rows.values()) {
+                if (params.containsKey("owner_id") && !params.get("owner_id").equals("eq." + row.getString("owner_id"))) {
+                    continue;
+                }
+                if (params.containsKey("id") && row.getString("id").compareTo(params.get("id").substring(3)) <= 0) {
+                    continue;
+                }
+                if (params.containsKey("or")) {
+                    Matcher keyset = KEYSET.matcher(params.get("or"));
+                    if (!keyset.matches() || row.isNull("updated_at")) {
+                        continue;
+                    }
+                    String updatedAt = row.getString("updated_at");
+                    int byTime = updatedAt.compareTo(keyset.group(1));
+                    if (byTime < 0 || (byTime == 0 && row.getString("id").compareTo(keyset.group(3)) <= 0)) {
+                        continue;
+                    }
+                }
+                matches.add(row);
+            }
+            String order = params.get("order");
+            if (order.startsWith("updated_at.desc")) {
+                // The mark probe: newest first, rows without updated_at last
+                Collections.sort(matches, (a, b) -> {
+                    if (a.isNull("updated_at") != b.isNull("updated_at")) {
+                        return a.isNull("updated_at") ? 1 : -1;
+                    }
+                    int byTime = b.optString("updated_at").compareTo(a.optString("updated_at"));
+                    return byTime != 0 ? byTime : b.optString("id").compareTo(a.optString("id"));
+                });
+            } else if (order.startsWith("updated_at")) {
+                Collections.sort(matches, (a, b) -> {
+                    int byTime = a.optString("updated_at").compareTo(b.optString("updated_at"));
+                    return byTime != 0 ? byTime : a.optString("id").compareTo(b.optString("id"));
+                });
+            }
+
+            int limit = Integer.parseInt(params.get("limit"));
+            JSONArray body = new JSONArray();
+            for (int i = 0; i < matches.size() && i < limit; i++) {
+                JSONObject row = matches.get(i);
+                body.put("id".equals(params.get("select")) ? new JSONObject().put("id", row.getString("id")) : row);
+            }
+            return StubHttpServer.Response.of(200, body.toString());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class EntityCacheTest {
+
+    @Test
+    public void readRefreshesRecency() {
+        EntityCache cache = EntityCache.getInstance(RuntimeEnvironment.getApplication());
+        cache.clear();
+        // Three ~200 KB entries overflow the 512 KB bound by one
+        String body = "\"" + new String(new char[200 * 1024]).replace('\0', 'x') + "\"";
+        cache.put("notice", "first", body);
+        cache.put("notice", "second", body);
+        assertNotNull(cache.get("notice", "first"));
+
+        cache.put("notice", "third", body);
+
+        assertEquals(body, cache.get("notice", "first"));
+        assertNull(cache.get("notice", "second"));
+        assertNotNull(cache.get("notice", "third"));
+    }
+}
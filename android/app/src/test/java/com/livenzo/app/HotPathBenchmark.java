@@ -0,0 +1,133 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.Parcel;
+import android.webkit.WebView;
+
+import com.livenzo.app.notification.NotificationEngine;
+import com.livenzo.app.notification.NotificationPayload;
+import com.livenzo.app.notification.PendingTaps;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bridge, serialization, notification and HTTP hot paths, checked against the baseline in
+ * src/test/resources/benchmark-baseline.json. All cases run in one test so the suite is
+ * recorded and compared as a unit.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HotPathBenchmark {
+
+    @Test
+    public void hotPaths() throws Exception {
+        Microbenchmark benchmark = new Microbenchmark("HotPathBenchmark");
+        final Map<String, String> data = chatPush();
+
+        benchmark.measure("profile_payload_build", () ->
+            FirebaseAuthManager.buildProfilePayload(new JSONObject(), "uid-123", "+919876543210", "fcm-token-abc"));
+
+        benchmark.measure("notification_payload_from_message", () ->
+            NotificationPayload.fromMessage(data, "Priya", "Is the room still available?"));
+
+        final Bundle extras = new Bundle();
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            extras.putString(entry.getKey(), entry.getValue());
+        }
+        benchmark.measure("notification_payload_from_extras", () -> NotificationPayload.fromExtras(extras));
+
+        final NotificationPayload payload = NotificationPayload.fromMessage(data, "Priya", "Is the room still available?");
+        benchmark.measure("notification_payload_parcel_roundtrip", () -> {
+            Parcel parcel = Parcel.obtain();
+            try {
+                payload.writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                NotificationPayload.CREATOR.createFromParcel(parcel);
+            } finally {
+                parcel.recycle();
+            }
+        });
+
+        final Context context = RuntimeEnvironment.getApplication();
+        benchmark.measure("notification_build_and_post", () ->
+            NotificationEngine.getInstance().show(context, "livenzo_notifications", payload));
+
+        final WebView webView = new WebView(context);
+        final WebEventBridge bridge = WebEventBridge.getInstance();
+        bridge.attach(webView);
+        benchmark.measure("bridge_dispatch_and_flush", () -> {
+            bridge.dispatchJson("notificationTapped", payload.json);
+            // Runs the posted frame callback that hands the event to the page
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(17));
+        });
+        assertNotNull(shadowOf(webView).getLastEvaluatedJavascript());
+        assertEquals(0, bridge.getQueueDepth());
+        bridge.detach(webView);
+
+        // Reads the page makes through the Android interface, as the bridge methods call them
+        final LocalStore store = new LocalStore(context, null);
+        try {
+            JSONArray rooms = new JSONArray();
+            for (int i = 0; i < 200; i++) {
+                rooms.put(new JSONObject()
+                    .put("id", String.format(Locale.US, "room-%03d", i))
+                    .put("owner_id", "owner-1")
+                    .put("available", i % 4 != 0)
+                    .put("price", 3000 + i * 25)
+                    .put("updated_at", "2024-05-01T10:15:30+00:00"));
+            }
+            store.upsert("rooms", rooms);
+            final JSONObject filters = new JSONObject().put("available", true);
+            benchmark.measure("bridge_query_local", () -> store.query("rooms", filters, "price", 50));
+        } finally {
+            store.close();
+        }
+
+        final PendingTaps taps = PendingTaps.getInstance();
+        benchmark.measure("bridge_take_pending_taps", () -> {
+            taps.add(payload);
+            taps.drainJson();
+        });
+
+        final StubHttpServer server = new StubHttpServer(request -> StubHttpServer.Response.of(201, "[]"));
+        try {
+            final NativeHttpClient client = new NativeHttpClient(server.url(""), server.url("/functions/v1"));
+            final String body = FirebaseAuthManager.buildProfilePayload(new JSONObject(), "uid-123", "+919876543210", "fcm-token-abc");
+            benchmark.measure("http_post_rest_keepalive", () ->
+                client.postRest("user_profiles", body, "resolution=merge-duplicates"));
+            assertEquals(1, server.connectionCount());
+        } finally {
+            server.close();
+        }
+
+        benchmark.finish();
+    }
+
+    private static Map<String, String> chatPush() {
+        Map<String, String> data = new HashMap<>();
+        data.put("type", "chat_message");
+        data.put("relationship_id", "7d1f2c9e-0b7a-4a43-9d2e-5f3b8c1a6e20");
+        data.put("room_id", "c2a4e1b0-3f5d-4e6a-8b7c-9d0e1f2a3b4c");
+        data.put("sender_id", "2b3c4d5e-6f70-4819-a2b3-c4d5e6f70819");
+        data.put("sender_name", "Priya");
+        data.put("message", "Is the room still available?");
+        data.put("created_at", "2024-05-01T10:15:30.000Z");
+        return Collections.unmodifiableMap(data);
+    }
+}
@@ -0,0 +1,145 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class LocalStoreTest {
+    private LocalStore store;
+
+    @Before
+    public void setUp() {
+        store = new LocalStore(RuntimeEnvironment.getApplication(), null);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void queriesFilterAndSortOnIndexedColumns() throws Exception {
+        store.upsert("rooms", new JSONArray()
+            .put(room("r1", "owner-a", true, 4500, "2024-05-01T10:00:00+00:00"))
+            .put(room("r2", "owner-a", false, 3000, "2024-05-02T10:00:00+00:00"))
+            .put(room("r3", "owner-a", true, 3800, "2024-05-03T10:00:00+00:00"))
+            .put(room("r4", "owner-b", true, 2000, "2024-05-04T10:00:00+00:00")));
+
+        JSONArray rows = new JSONArray(store.query("rooms",
+            new JSONObject().put("owner_id", "owner-a").put("available", true), "price.desc", 0));
+
+        assertEquals(2, rows.length());
+        assertEquals("r1", rows.getJSONObject(0).getString("id"));
+        assertEquals("r3", rows.getJSONObject(1).getString("id"));
+        // Rows come back whole, including columns that are not indexed
+        assertEquals("Room r1", rows.getJSONObject(0).getString("title"));
+    }
+
+    @Test
+    public void upsertReplacesRowsAndLeavesTheCursorAlone() throws Exception {
+        store.upsert("rooms", new JSONArray().put(room("r1", "owner-a", true, 4500, "2024-05-01T10:00:00+00:00")));
+        store.upsert("rooms", new JSONArray().put(room("r1", "owner-a", false, 4700, "2024-05-05T10:00:00+00:00")));
+
+        JSONArray rows = new JSONArray(store.query("rooms", null, null, 0));
+        assertEquals(1, rows.length());
+        assertEquals(4700, rows.getJSONObject(0).getInt("price"));
+        assertNull(store.getWatermark("rooms"));
+    }
+
+    @Test
+    public void firstPullEndsAtTheMarkNotTheNewestRowSeen() throws Exception {
+        store.startBackfill("rooms", "2024-05-02T10:00:00+00:00", "r5", "owner-a");
+        // r9 was edited after the pull started, so it is newer than the mark
+        assertEquals(2, store.applyDelta("rooms", new JSONArray()
+            .put(room("r2", "owner-a", true, 1, "2024-05-02T10:00:00+00:00"))
+            .put(room("r9", "owner-a", true, 1, "2024-05-03T10:00:00+00:00")), "r9", "owner-a"));
+        assertNull(store.getWatermark("rooms"));
+        assertEquals(1, store.applyDelta("rooms", new JSONArray()
+            .put(room("r1", "owner-a", true, 1, "2024-05-01T10:00:00+00:00")), null, "owner-a"));
+
+        LocalStore.SyncCursor cursor = store.getCursor("rooms");
+        assertEquals("2024-05-02T10:00:00+00:00", cursor.watermark);
+        assertEquals("r5", cursor.id);
+        assertNull(cursor.backfillId);
+        assertNull(cursor.backfillMark);
+        assertEquals("owner-a", cursor.scope);
+    }
+
+    @Test
+    public void deltaAdvancesTheCursorByWatermarkThenId() throws Exception {
+        store.startBackfill("rooms", "2024-05-01T10:00:00+00:00", "r1", "owner-a");
+        store.applyDelta("rooms", new JSONArray()
+            .put(room("r1", "owner-a", true, 1, "2024-05-01T10:00:00+00:00")), null, "owner-a");
+
+        assertEquals(2, store.applyDelta("rooms", new JSONArray()
+            .put(room("r2", "owner-a", true, 1, "2024-05-02T10:00:00+00:00"))
+            .put(room("r9", "owner-a", true, 1, "2024-05-02T10:00:00+00:00")), null, "owner-a"));
+
+        LocalStore.SyncCursor cursor = store.getCursor("rooms");
+        assertEquals("2024-05-02T10:00:00+00:00", cursor.watermark);
+        assertEquals("r9", cursor.id);
+    }
+
+    @Test
+    public void noticesAreTrackedByUpdatedAt() throws Exception {
+        JSONObject notice = new JSONObject()
+            .put("id", "n1")
+            .put("owner_id", "owner-a")
+            .put("created_at", "2024-06-01T08:00:00+00:00")
+            .put("updated_at", "2024-06-03T08:00:00+00:00");
+        assertEquals("2024-06-03T08:00:00+00:00", LocalStore.watermarkOf(LocalStore.requireTable("notices"), notice));
+        // Rows from before the column existed fall back to created_at
+        notice.put("updated_at", JSONObject.NULL);
+        assertEquals("2024-06-01T08:00:00+00:00", LocalStore.watermarkOf(LocalStore.requireTable("notices"), notice));
+    }
+
+    @Test
+    public void clearDropsRowsAndCursors() throws Exception {
+        store.startBackfill("rooms", "2024-05-01T10:00:00+00:00", "r1", "owner-a");
+        store.applyDelta("rooms", new JSONArray().put(room("r1", "owner-a", true, 1, "2024-05-01T10:00:00+00:00")),
+            null, "owner-a");
+
+        store.clear();
+
+        assertEquals("[]", store.query("rooms", null, null, 0));
+        assertNull(store.getWatermark("rooms"));
+    }
+
+    @Test
+    public void refusesUndeclaredColumnsAndTables() {
+        try {
+            store.query("rooms", null, "title; DROP TABLE rooms", 0);
+            fail("accepted an undeclared sort column");
+        } catch (IllegalArgumentException expected) {
+            // Only declared columns are spliced into SQL
+        }
+        try {
+            store.query("user_profiles", null, null, 0);
+            fail("accepted an unknown table");
+        } catch (IllegalArgumentException expected) {
+            // Not a local table
+        }
+    }
+
+    private static JSONObject room(String id, String ownerId, boolean available, int price, String updatedAt)
+            throws Exception {
+        return new JSONObject()
+            .put("id", id)
+            .put("owner_id", ownerId)
+            .put("available", available)
+            .put("price", price)
+            .put("title", "Room " + id)
+            .put("created_at", "2024-01-01T00:00:00+00:00")
+            .put("updated_at", updatedAt);
+    }
+}
@@ -0,0 +1,50 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(RobolectricTestRunner.class)
+public class MetricsTest {
+
+    @Test
+    public void dailyCountersDoNotLoseConcurrentIncrements() throws Exception {
+        final Context context = RuntimeEnvironment.getApplication();
+        final int threads = 8;
+        final int perThread = 250;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < perThread; j++) {
+                    Metrics.incrementDaily(context, "test.daily");
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        String today = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+        JSONObject daily = new JSONObject(Metrics.snapshotJson(context)).getJSONObject("daily");
+        assertEquals(threads * perThread, daily.getLong("test.daily@" + today));
+    }
+}
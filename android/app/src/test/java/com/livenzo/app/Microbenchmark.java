@@ -0,0 +1,241 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Minimal in-process benchmark runner for JVM tests. Each case is warmed up, then timed over
+ * fixed-length batches; the per-op median, p90 and allocation are written to
+ * build/benchmark-results and compared against the checked-in
+ * src/test/resources/benchmark-baseline.json.
+ *
+ * Timing limits are loose because baselines come from a different machine; allocation is
+ * machine independent and checked tightly. Before/after claims are ratios between two cases of
+ * the same run, which a loaded machine slows alike. Run the tests with -Pbenchmark.record=true to
+ * rewrite the baseline after an intended change.
+ */
+final class Microbenchmark {
+    private static final long WARMUP_NS = 300_000_000L;
+    private static final long BATCH_NS = 10_000_000L;
+    private static final int BATCHES = 30;
+    private static final double MAX_SLOWDOWN = 5.0;
+    // Nanosecond-scale cases swing with JIT decisions; below this a slowdown is noise
+    private static final long TIME_SLACK_NS = 1_000;
+    private static final double MAX_ALLOCATION_GROWTH = 2.0;
+    private static final long ALLOCATION_SLACK_BYTES = 1024;
+
+    static final String BASELINE_RESOURCE = "benchmark-baseline.json";
+    static final String BASELINE_FILE = "src/test/resources/" + BASELINE_RESOURCE;
+
+    interface Body {
+        void run() throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final long medianNs;
+        final long p90Ns;
+        final long allocatedBytes;
+
+        Result(String name, long medianNs, long p90Ns, long allocatedBytes) {
+            this.name = name;
+            this.medianNs = medianNs;
+            this.p90Ns = p90Ns;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        JSONObject toJson() throws Exception {
+            return new JSONObject()
+                .put("median_ns", medianNs)
+                .put("p90_ns", p90Ns)
+                .put("allocated_bytes", allocatedBytes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: median %,d ns, p90 %,d ns, %,d B/op", name, medianNs, p90Ns, allocatedBytes);
+        }
+    }
+
+    private final String suite;
+    private final Map<String, Result> results = new TreeMap<>();
+    private final Map<String, Comparison> comparisons = new TreeMap<>();
+
+    private static final class Comparison {
+        final Result candidate;
+        final Result reference;
+
+        Comparison(Result candidate, Result reference) {
+            this.candidate = candidate;
+            this.reference = reference;
+        }
+
+        double ratio() {
+            return (double) candidate.medianNs / Math.max(1L, reference.medianNs);
+        }
+    }
+
+    Microbenchmark(String suite) {
+        this.suite = suite;
+    }
+
+    Result measure(String name, Body body) throws Exception {
+        // Warm up and size a batch so each one runs for about BATCH_NS
+        long ops = 0;
+        long startedAt = System.nanoTime();
+        while (System.nanoTime() - startedAt < WARMUP_NS) {
+            body.run();
+            ops++;
+        }
+        long opsPerBatch = Math.max(1L, ops * BATCH_NS / (System.nanoTime() - startedAt));
+
+        long[] perOp = new long[BATCHES];
+        long allocatedBefore = allocatedBytes();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            long batchStart = System.nanoTime();
+            for (long i = 0; i < opsPerBatch; i++) {
+                body.run();
+            }
+            perOp[batch] = (System.nanoTime() - batchStart) / opsPerBatch;
+        }
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        Arrays.sort(perOp);
+
+        Result result = new Result(name, perOp[BATCHES / 2], perOp[BATCHES * 9 / 10],
+            allocated < 0 ? -1 : allocated / (opsPerBatch * BATCHES));
+        results.put(name, result);
+        System.out.println("[benchmark] " + suite + "." + result);
+        return result;
+    }
+
+    /**
+     * Records candidate's median as a fraction of reference's, both measured in this run.
+     */
+    void compare(String name, Result candidate, Result reference) {
+        comparisons.put(name, new Comparison(candidate, reference));
+        System.out.println(String.format(Locale.US, "[benchmark] %s.%s: %s / %s = %.4f",
+            suite, name, candidate.name, reference.name, comparisons.get(name).ratio()));
+    }
+
+    /**
+     * Writes this run's numbers, then either records them as the new baseline or fails on a
+     * regression against it.
+     */
+    void finish() throws Exception {
+        JSONObject run = new JSONObject();
+        for (Result result : results.values()) {
+            run.put(result.name, result.toJson());
+        }
+        for (Map.Entry<String, Comparison> comparison : comparisons.entrySet()) {
+            run.put(comparison.getKey(), new JSONObject().put("ratio", comparison.getValue().ratio()));
+        }
+        write(new File("build/benchmark-results/" + suite + ".json"), run.toString(2));
+
+        if (Boolean.getBoolean("benchmark.record")) {
+            // Merged into the file on disk so suites recorded in the same run keep each other's numbers
+            File file = new File(System.getProperty("benchmark.baselineFile", BASELINE_FILE));
+            JSONObject baseline = file.exists() ? new JSONObject(read(new FileInputStream(file))) : new JSONObject();
+            baseline.put(suite, run);
+            write(file, baseline.toString(2));
+            return;
+        }
+
+        InputStream in = Microbenchmark.class.getClassLoader().getResourceAsStream(BASELINE_RESOURCE);
+        JSONObject baseline = in != null ? new JSONObject(read(in)) : new JSONObject();
+
+        JSONObject expected = baseline.optJSONObject(suite);
+        assertTrue("No baseline for " + suite + "; run with -Pbenchmark.record=true", expected != null);
+        StringBuilder regressions = new StringBuilder();
+        Iterator<String> names = expected.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            JSONObject base = expected.getJSONObject(name);
+            if (base.has("ratio")) {
+                checkComparison(name, base.getDouble("ratio"), regressions);
+                continue;
+            }
+            Result result = results.get(name);
+            if (result == null) {
+                regressions.append('\n').append(name).append(": not measured");
+                continue;
+            }
+            long baseNs = base.getLong("median_ns");
+            if (result.medianNs > baseNs * MAX_SLOWDOWN && result.medianNs - baseNs > TIME_SLACK_NS) {
+                regressions.append('\n').append(result).append(" (baseline ").append(baseNs).append(" ns)");
+            }
+            long baseBytes = base.getLong("allocated_bytes");
+            if (baseBytes >= 0 && result.allocatedBytes >= 0
+                    && result.allocatedBytes > baseBytes * MAX_ALLOCATION_GROWTH + ALLOCATION_SLACK_BYTES) {
+                regressions.append('\n').append(result).append(" (baseline ").append(baseBytes).append(" B/op)");
+            }
+        }
+        assertTrue("Benchmark regressions:" + regressions, regressions.length() == 0);
+    }
+
+    /**
+     * The candidate regresses when it runs MAX_SLOWDOWN times slower than the baseline ratio
+     * predicts from this run's reference, by more than the nanosecond noise floor.
+     */
+    private void checkComparison(String name, double baseRatio, StringBuilder regressions) {
+        Comparison comparison = comparisons.get(name);
+        if (comparison == null) {
+            regressions.append('\n').append(name).append(": not compared");
+            return;
+        }
+        double expectedNs = comparison.reference.medianNs * baseRatio;
+        long actualNs = comparison.candidate.medianNs;
+        if (actualNs > expectedNs * MAX_SLOWDOWN && actualNs - expectedNs > TIME_SLACK_NS) {
+            regressions.append('\n').append(String.format(Locale.US, "%s: ratio %.4f (baseline %.4f)",
+                name, comparison.ratio(), baseRatio));
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write((content + "\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
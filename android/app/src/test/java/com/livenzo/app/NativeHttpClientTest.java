@@ -0,0 +1,81 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+@RunWith(RobolectricTestRunner.class)
+public class NativeHttpClientTest {
+    private StubHttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubHttpServer(request -> {
+            if (request.path.startsWith("/gzip")) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                gzip.write("{\"compressed\":true}".getBytes("UTF-8"));
+                gzip.close();
+                return new StubHttpServer.Response(200, compressed.toByteArray()).header("Content-Encoding", "gzip");
+            }
+            if (request.path.startsWith("/missing")) {
+                return StubHttpServer.Response.of(404, "{\"message\":\"not found\"}");
+            }
+            return StubHttpServer.Response.of(200, "{\"echo\":" + request.body.length + "}");
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void reusesOneConnectionAcrossSequentialCalls() throws Exception {
+        NativeHttpClient client = NativeHttpClient.getInstance();
+        for (int i = 0; i < 5; i++) {
+            NativeHttpClient.Response response = client.post(server.url("/rest/v1/user_profiles"),
+                Collections.singletonMap("Prefer", "resolution=merge-duplicates"), "{\"i\":" + i + "}");
+            assertEquals(200, response.code);
+        }
+        client.get(server.url("/functions/v1/sync-firebase-user"), null);
+
+        assertEquals(6, server.requests().size());
+        assertEquals(1, server.connectionCount());
+    }
+
+    @Test
+    public void drainsErrorAndGzipBodiesSoTheSocketIsReused() throws Exception {
+        NativeHttpClient client = NativeHttpClient.getInstance();
+
+        NativeHttpClient.Response missing = client.get(server.url("/missing"), null);
+        assertFalse(missing.isSuccessful());
+        assertEquals("{\"message\":\"not found\"}", missing.body);
+
+        NativeHttpClient.Response gzipped = client.get(server.url("/gzip"), null);
+        assertEquals("{\"compressed\":true}", gzipped.body);
+        assertTrue("counted before decoding", gzipped.bytesReceived > 0 && gzipped.bytesReceived != gzipped.body.length());
+
+        client.get(server.url("/ok"), null);
+        assertEquals(1, server.connectionCount());
+    }
+
+    @Test
+    public void asksForGzipAndKeepAlive() throws Exception {
+        NativeHttpClient.getInstance().get(server.url("/ok"), null);
+
+        StubHttpServer.Request request = server.requests().get(0);
+        assertEquals("gzip", request.header("Accept-Encoding"));
+        assertEquals("keep-alive", request.header("Connection"));
+    }
+}
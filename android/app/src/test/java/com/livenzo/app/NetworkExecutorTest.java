@@ -0,0 +1,44 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class NetworkExecutorTest {
+
+    @Test
+    public void cancelAllOnlyCancelsTheOwnersTasks() throws Exception {
+        NetworkExecutor executor = NetworkExecutor.getInstance();
+        Object owner = new Object();
+        CountDownLatch release = new CountDownLatch(1);
+        // Holds the single media thread so the owned task below stays queued
+        Future<?> blocker = executor.submitMedia(null, "blocker", () -> await(release));
+        Future<?> owned = executor.submitMedia(owner, "owned", () -> { });
+        CountDownLatch unownedRan = new CountDownLatch(1);
+        Future<?> unowned = executor.submitMedia(null, "unowned", unownedRan::countDown);
+
+        executor.cancelAll(owner);
+        release.countDown();
+
+        assertTrue(unownedRan.await(5, TimeUnit.SECONDS));
+        assertTrue(owned.isCancelled());
+        assertFalse(blocker.isCancelled());
+        assertFalse(unowned.isCancelled());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.util.Base64;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives RealtimeSocket and RealtimeClient against a local WebSocket stand-in for Supabase
+ * Realtime.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RealtimeClientTest {
+    private static final long TIMEOUT_MS = 5_000L;
+
+    private StubWebSocketServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubWebSocketServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void handshakeTimesOutWhenTheServerNeverAnswers() throws Exception {
+        server.setAnswerUpgrade(false);
+        long startedAt = System.currentTimeMillis();
+        try {
+            RealtimeSocket.connect(server.url("/realtime/v1/websocket"), new Messages(), 300);
+            fail("connected without an upgrade response");
+        } catch (SocketTimeoutException expected) {
+            assertTrue(System.currentTimeMillis() - startedAt < TIMEOUT_MS);
+        }
+    }
+
+    @Test
+    public void readsAreNotBoundByTheHandshakeTimeout() throws Exception {
+        Messages messages = new Messages();
+        RealtimeSocket socket = RealtimeSocket.connect(server.url("/realtime/v1/websocket"), messages, 300);
+        StubWebSocketServer.Connection connection = server.awaitConnection(TIMEOUT_MS);
+        assertNotNull(connection);
+
+        // Quiet for longer than the handshake timeout, as an idle channel is
+        Thread.sleep(600);
+        connection.sendText("{\"event\":\"late\"}");
+
+        assertEquals("{\"event\":\"late\"}", messages.texts.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(messages.closes.isEmpty());
+        socket.close();
+    }
+
+    @Test
+    public void suppressesPushesOnlyAfterTheJoinIsAcknowledged() throws Exception {
+        Context context = RuntimeEnvironment.getApplication();
+        SessionState session = new SessionState(context, null);
+        session.onSupabaseAccessToken(token("user-1"));
+        RealtimeClient client = new RealtimeClient(session, server.url("/realtime/v1/websocket?vsn=1.0.0"));
+        client.setActiveChatRoom("room-1");
+        Map<String, String> push = new HashMap<>();
+        push.put("type", "chat_message");
+        push.put("room_id", "room-1");
+
+        client.setForeground(true);
+        StubWebSocketServer.Connection connection = server.awaitConnection(TIMEOUT_MS);
+        assertNotNull(connection);
+        JSONObject join = new JSONObject(connection.readText());
+        assertEquals("phx_join", join.getString("event"));
+        assertFalse("suppressed before the join was acknowledged", client.shouldSuppress(push));
+
+        // A reply to some other ref is not a join
+        connection.sendText(reply("999", "ok"));
+        Thread.sleep(200);
+        assertFalse(client.shouldSuppress(push));
+
+        connection.sendText(reply(join.getString("ref"), "ok"));
+        assertTrue(awaitSuppress(client, push, true));
+
+        // Channel errors mean inserts stop arriving, so pushes must show again
+        connection.sendText(new JSONObject().put("topic", join.getString("topic"))
+            .put("event", "phx_error").put("payload", new JSONObject()).put("ref", JSONObject.NULL).toString());
+        assertTrue(awaitSuppress(client, push, false));
+        client.setForeground(false);
+    }
+
+    @Test
+    public void rejectedJoinNeverSuppresses() throws Exception {
+        Context context = RuntimeEnvironment.getApplication();
+        SessionState session = new SessionState(context, null);
+        session.onSupabaseAccessToken(token("user-1"));
+        RealtimeClient client = new RealtimeClient(session, server.url("/realtime/v1/websocket?vsn=1.0.0"));
+        client.setActiveChatRoom("room-1");
+        Map<String, String> push = new HashMap<>();
+        push.put("type", "chat_message");
+        push.put("room_id", "room-1");
+
+        client.setForeground(true);
+        StubWebSocketServer.Connection connection = server.awaitConnection(TIMEOUT_MS);
+        JSONObject join = new JSONObject(connection.readText());
+        connection.sendText(reply(join.getString("ref"), "error"));
+
+        // The client drops the connection and starts over
+        try {
+            while (true) {
+                connection.readText();
+            }
+        } catch (IOException expected) {
+            // Closed by the client
+        }
+        assertFalse(client.shouldSuppress(push));
+        client.setForeground(false);
+    }
+
+    private static boolean awaitSuppress(RealtimeClient client, Map<String, String> push, boolean expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (client.shouldSuppress(push) == expected) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static String reply(String ref, String status) throws Exception {
+        return new JSONObject()
+            .put("topic", "realtime:livenzo-native")
+            .put("event", "phx_reply")
+            .put("payload", new JSONObject().put("status", status).put("response", new JSONObject()))
+            .put("ref", ref)
+            .toString();
+    }
+
+    private static String token(String sub) throws Exception {
+        byte[] claims = new JSONObject().put("sub", sub).toString().getBytes("UTF-8");
+        return "header." + Base64.encodeToString(claims, Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP) + ".sig";
+    }
+
+    private static final class Messages implements RealtimeSocket.Listener {
+        final BlockingQueue<String> texts = new ArrayBlockingQueue<>(16);
+        final BlockingQueue<String> closes = new ArrayBlockingQueue<>(4);
+
+        @Override
+        public void onText(String text) {
+            texts.add(text);
+        }
+
+        @Override
+        public void onClosed(Exception cause) {
+            closes.add(String.valueOf(cause));
+        }
+    }
+}
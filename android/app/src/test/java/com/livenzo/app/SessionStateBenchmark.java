@@ -0,0 +1,58 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Bridge session reads before and after SessionState. The "before" cases replay what
+ * isUserLoggedIn() and getCurrentUserUID() used to do minus FirebaseAuth.getCurrentUser(),
+ * which cannot run on the JVM, so they understate the old cost.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SessionStateBenchmark {
+
+    @Test
+    public void bridgeReads() throws Exception {
+        final Context context = RuntimeEnvironment.getApplication();
+        context.getSharedPreferences("livenzo_auth", Context.MODE_PRIVATE)
+            .edit().putBoolean("is_logged_in", true).commit();
+        final SessionState session = new SessionState(context, null);
+        session.onSignedIn("uid-123", "+919876543210", "fcm-token-abc");
+
+        Microbenchmark benchmark = new Microbenchmark("SessionStateBenchmark");
+        final boolean[] sink = new boolean[1];
+
+        Microbenchmark.Result before = benchmark.measure("is_logged_in_prefs_before", () -> {
+            SharedPreferences prefs = context.getSharedPreferences("livenzo_auth", Context.MODE_PRIVATE);
+            sink[0] ^= prefs.getBoolean("is_logged_in", false);
+        });
+        Microbenchmark.Result after = benchmark.measure("is_logged_in_snapshot_after", () ->
+            sink[0] ^= session.get().isLoggedIn());
+        benchmark.measure("uid_and_phone_snapshot_after", () -> {
+            SessionState.Snapshot snapshot = session.get();
+            sink[0] ^= snapshot.uid != null && snapshot.phone != null;
+        });
+        benchmark.measure("fcm_token_update", new Microbenchmark.Body() {
+            private int i;
+
+            @Override
+            public void run() {
+                session.onFcmToken((i++ & 1) == 0 ? "token-a" : "token-b");
+            }
+        });
+
+        // Timing is judged by the harness against the baseline ratio; only behaviour is asserted here
+        benchmark.compare("is_logged_in_snapshot_vs_prefs", after, before);
+        assertTrue(session.get().isLoggedIn());
+        assertEquals("uid-123", session.get().uid);
+        benchmark.finish();
+    }
+}
@@ -0,0 +1,105 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.Base64;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SessionStateTest {
+
+    private SessionState newSession() {
+        return new SessionState(RuntimeEnvironment.getApplication(), null);
+    }
+
+    @Test
+    public void startsFromPersistedFlags() {
+        Context context = RuntimeEnvironment.getApplication();
+        context.getSharedPreferences("livenzo_auth", Context.MODE_PRIVATE)
+            .edit().putBoolean("is_logged_in", true).commit();
+        context.getSharedPreferences("livenzo_prefs", Context.MODE_PRIVATE)
+            .edit().putString("fcm_token", "stored-token").commit();
+
+        SessionState.Snapshot snapshot = newSession().get();
+        assertTrue(snapshot.profileSynced);
+        assertEquals("stored-token", snapshot.fcmToken);
+        // No Firebase user yet, so the bridge still reports signed out
+        assertFalse(snapshot.isLoggedIn());
+    }
+
+    @Test
+    public void signInAndOutSwapSnapshots() {
+        SessionState session = newSession();
+        session.onSignedIn("uid-1", "+911234567890", "token-a");
+        SessionState.Snapshot signedIn = session.get();
+        assertTrue(signedIn.isLoggedIn());
+        assertEquals("uid-1", signedIn.uid);
+
+        session.onSignedOut();
+        SessionState.Snapshot signedOut = session.get();
+        assertFalse(signedOut.isLoggedIn());
+        assertNull(signedOut.uid);
+        assertEquals("token-a", signedOut.fcmToken);
+        // Readers holding the old snapshot keep a consistent view
+        assertEquals("uid-1", signedIn.uid);
+    }
+
+    @Test
+    public void unchangedTokenDoesNotNotify() {
+        SessionState session = newSession();
+        final List<SessionState.Snapshot> seen = new ArrayList<>();
+        session.addListener((previous, current) -> seen.add(current));
+
+        session.onFcmToken("token-a");
+        SessionState.Snapshot afterFirst = session.get();
+        session.onFcmToken("token-a");
+        session.onFcmToken(null);
+
+        assertEquals(1, seen.size());
+        assertSame(afterFirst, session.get());
+    }
+
+    @Test
+    public void accessTokenSurvivesProcessDeathUntilItExpires() {
+        String live = jwtExpiringIn(3_600_000L);
+        newSession().onSupabaseAccessToken(live);
+        // A fresh instance stands in for a process started by a push
+        assertEquals(live, newSession().get().accessToken);
+
+        newSession().onSupabaseAccessToken(jwtExpiringIn(30_000L));
+        assertNull(newSession().get().accessToken);
+    }
+
+    @Test
+    public void signOutForgetsPersistedAccessToken() {
+        SessionState session = newSession();
+        session.onSupabaseAccessToken(jwtExpiringIn(3_600_000L));
+        session.onSignedOut();
+        assertNull(newSession().get().accessToken);
+    }
+
+    @Test
+    public void tokenWithoutExpiryIsNotPersisted() {
+        newSession().onSupabaseAccessToken("not-a-jwt");
+        assertNull(newSession().get().accessToken);
+    }
+
+    private static String jwtExpiringIn(long millis) {
+        long exp = (System.currentTimeMillis() + millis) / 1000L;
+        String claims = "{\"sub\":\"user-1\",\"exp\":" + exp + "}";
+        int flags = Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP;
+        return "eyJhbGciOiJIUzI1NiJ9." + Base64.encodeToString(claims.getBytes(), flags) + ".sig";
+    }
+}
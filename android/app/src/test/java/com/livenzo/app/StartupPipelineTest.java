@@ -0,0 +1,90 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class StartupPipelineTest {
+
+    @Test
+    public void independentStepsOverlap() throws Exception {
+        // Each step waits for the other, so this only finishes if they run at the same time
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final CountDownLatch done = new CountDownLatch(2);
+        new StartupPipeline()
+            .add("a", () -> {
+                barrier.await(2, TimeUnit.SECONDS);
+                done.countDown();
+            })
+            .add("b", () -> {
+                barrier.await(2, TimeUnit.SECONDS);
+                done.countDown();
+            })
+            .start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void dependentStepStartsAsSoonAsItsDependencyFinishes() throws Exception {
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch slowMayFinish = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        new StartupPipeline()
+            .add("auth", () -> {
+                order.add("auth");
+                done.countDown();
+            })
+            .add("slow", () -> {
+                // Holds a thread until the dependent step has run
+                slowMayFinish.await(5, TimeUnit.SECONDS);
+                order.add("slow");
+                done.countDown();
+            })
+            .add("login", () -> {
+                order.add("login");
+                slowMayFinish.countDown();
+                done.countDown();
+            }, "auth")
+            .start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("auth", order.get(0));
+        assertEquals("login", order.get(1));
+        assertEquals("slow", order.get(2));
+    }
+
+    @Test
+    public void skipsStepsWhoseDependencyFailed() throws Exception {
+        final List<String> ran = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        new StartupPipeline()
+            .add("broken", () -> {
+                throw new IllegalStateException("boom");
+            })
+            .add("child", () -> ran.add("child"), "broken")
+            .add("grandchild", () -> ran.add("grandchild"), "child")
+            .add("independent", () -> {
+                ran.add("independent");
+                done.countDown();
+            })
+            .start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(ran.contains("child"));
+        assertFalse(ran.contains("grandchild"));
+        assertEquals(1, ran.size());
+    }
+}
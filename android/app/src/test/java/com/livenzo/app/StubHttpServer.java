@@ -0,0 +1,253 @@
+package com.livenzo.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 server on localhost standing in for Supabase in JVM tests. Connections are
+ * kept alive and counted, so tests can assert on socket reuse as well as on requests.
+ */
+final class StubHttpServer implements Closeable {
+
+    interface Handler {
+        Response handle(Request request) throws Exception;
+    }
+
+    static final class Request {
+        final String method;
+        final String path;
+        // Header names are lower-cased
+        final Map<String, String> headers;
+        final byte[] body;
+
+        Request(String method, String path, Map<String, String> headers, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        String header(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+
+        String bodyString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    static final class Response {
+        final int code;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        final byte[] body;
+
+        Response(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        static Response of(int code, String body) {
+            return new Response(code, body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response empty(int code) {
+            return new Response(code, new byte[0]);
+        }
+
+        Response header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final Handler handler;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+    private final List<Socket> open = Collections.synchronizedList(new ArrayList<Socket>());
+    private volatile boolean closed;
+
+    StubHttpServer(Handler handler) throws IOException {
+        this(handler, 0);
+    }
+
+    /** Binds a specific port, e.g. to bring a server back where a client expects it. */
+    StubHttpServer(Handler handler, int port) throws IOException {
+        this.handler = handler;
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 50);
+        Thread acceptor = new Thread(this::acceptLoop, "stub-http-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    int connectionCount() {
+        return connections.get();
+    }
+
+    List<Request> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        synchronized (open) {
+            for (Socket socket : open) {
+                socket.close();
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                open.add(socket);
+                Thread worker = new Thread(() -> serve(socket), "stub-http-conn");
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            // One segment per response, so timings don't pick up Nagle/delayed-ACK stalls
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            while (!closed) {
+                String requestLine = readLine(in);
+                if (requestLine == null) {
+                    return;
+                }
+                if (requestLine.isEmpty()) {
+                    continue;
+                }
+                String[] parts = requestLine.split(" ");
+                Map<String, String> headers = new LinkedHashMap<>();
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+                }
+                byte[] body = readBody(in, headers);
+                Request request = new Request(parts[0], parts[1], headers, body);
+                requests.add(request);
+
+                Response response;
+                try {
+                    response = handler.handle(request);
+                } catch (Exception e) {
+                    response = Response.of(500, String.valueOf(e));
+                }
+                write(out, request, response);
+                if ("close".equalsIgnoreCase(headers.get("connection"))) {
+                    return;
+                }
+            }
+        } catch (SocketException | EOFException e) {
+            // Client went away
+        } catch (IOException e) {
+            // Same; nothing to report from a stand-in
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+
+    private static byte[] readBody(InputStream in, Map<String, String> headers) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            while (true) {
+                int size = Integer.parseInt(readLine(in).trim(), 16);
+                if (size == 0) {
+                    readLine(in);
+                    break;
+                }
+                body.write(readExactly(in, size));
+                readLine(in);
+            }
+        } else if (headers.containsKey("content-length")) {
+            body.write(readExactly(in, Integer.parseInt(headers.get("content-length"))));
+        }
+        return body.toByteArray();
+    }
+
+    private static void write(OutputStream out, Request request, Response response) throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(response.code).append(" Stub\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        boolean bodyless = response.code == 204 || response.code == 304 || "HEAD".equals(request.method);
+        if (!bodyless) {
+            head.append("Content-Length: ").append(response.body.length).append("\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (!bodyless) {
+            out.write(response.body);
+        }
+        out.flush();
+    }
+
+    private static byte[] readExactly(InputStream in, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+        return buffer;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
@@ -0,0 +1,182 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class SyncOutboxTest {
+    private static final long TIMEOUT_MS = 5_000L;
+
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private Context context;
+    private StubHttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.getApplication();
+        server = new StubHttpServer(request -> StubHttpServer.Response.of(status.get(), "{}"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void deliversAndForgetsEntry() throws Exception {
+        SyncOutbox outbox = newOutbox(server.url(""));
+
+        outbox.enqueue("fcm_token:u1", SyncOutbox.TARGET_FUNCTION, "sync-firebase-user", null, "{\"a\":1}");
+
+        awaitSize(outbox, 0);
+        assertEquals("/functions/v1/sync-firebase-user", server.requests().get(0).path);
+        assertEquals("{\"a\":1}", server.requests().get(0).bodyString());
+        assertEquals("fcm_token:u1", delivered.get(0));
+        assertEquals(0, awaitPersisted(0).length());
+    }
+
+    @Test
+    public void keepsServerErrorsWithBackoffAcrossNetworkChanges() throws Exception {
+        status.set(503);
+        SyncOutbox outbox = newOutbox(server.url(""));
+
+        outbox.enqueue("user_profile:u1", SyncOutbox.TARGET_REST, "user_profiles", "resolution=merge-duplicates", "{}");
+
+        JSONObject entry = awaitPersisted(1).getJSONObject(0);
+        assertEquals(1, entry.getInt("attempts"));
+        assertTrue(entry.getLong("next_attempt_at") > System.currentTimeMillis());
+        assertEquals(false, entry.getBoolean("offline"));
+
+        // The backend answered, so a reconnect is no reason to hit it again early
+        status.set(200);
+        outbox.onNetworkAvailable();
+        Thread.sleep(200);
+        assertEquals(1, server.requests().size());
+        assertEquals(1, outbox.size());
+    }
+
+    @Test
+    public void dropsClientErrorsWithoutRetry() throws Exception {
+        status.set(400);
+        SyncOutbox outbox = newOutbox(server.url(""));
+
+        outbox.enqueue("fcm_token:u1", SyncOutbox.TARGET_FUNCTION, "sync-firebase-user", null, "{}");
+
+        awaitSize(outbox, 0);
+        assertEquals(1, server.requests().size());
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void retriesOfflineEntriesAsSoonAsTheNetworkReturns() throws Exception {
+        // Nothing listens here, so the first attempt fails before reaching a server
+        String unreachable = server.url("");
+        server.close();
+        SyncOutbox outbox = newOutbox(unreachable);
+
+        outbox.enqueue("fcm_token:u1", SyncOutbox.TARGET_FUNCTION, "sync-firebase-user", null, "{}");
+
+        JSONObject entry = awaitPersisted(1).getJSONObject(0);
+        assertEquals(true, entry.getBoolean("offline"));
+        assertEquals(1, outbox.size());
+
+        server = new StubHttpServer(request -> StubHttpServer.Response.of(200, "{}"), portOf(unreachable));
+        outbox.onNetworkAvailable();
+
+        awaitSize(outbox, 0);
+        assertEquals("fcm_token:u1", delivered.get(0));
+    }
+
+    @Test
+    public void newerPayloadSupersedesWaitingOne() throws Exception {
+        status.set(503);
+        SyncOutbox outbox = newOutbox(server.url(""));
+
+        outbox.enqueue("fcm_token:u1", SyncOutbox.TARGET_FUNCTION, "sync-firebase-user", null, "{\"v\":1}");
+        awaitPersisted(1);
+        outbox.enqueue("fcm_token:u1", SyncOutbox.TARGET_FUNCTION, "sync-firebase-user", null, "{\"v\":2}");
+
+        assertEquals(1, outbox.size());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        JSONArray persisted;
+        do {
+            Thread.sleep(20);
+            persisted = readPersisted();
+        } while ((persisted == null || !persisted.getJSONObject(0).getString("body").contains("2"))
+            && System.currentTimeMillis() < deadline);
+        assertEquals("{\"v\":2}", persisted.getJSONObject(0).getString("body"));
+    }
+
+    private SyncOutbox newOutbox(String baseUrl) {
+        new File(context.getFilesDir(), "sync_outbox.json").delete();
+        SyncOutbox outbox = new SyncOutbox(context, new NativeHttpClient(baseUrl, baseUrl + "/functions/v1"));
+        outbox.addListener(entry -> delivered.add(entry.key));
+        return outbox;
+    }
+
+    private static int portOf(String url) {
+        return Uri.parse(url).getPort();
+    }
+
+    private static void awaitSize(SyncOutbox outbox, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (outbox.size() != size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(size, outbox.size());
+    }
+
+    private JSONArray awaitPersisted(int size) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        JSONArray persisted = readPersisted();
+        while ((persisted == null || persisted.length() != size
+                || (size > 0 && persisted.getJSONObject(0).getInt("attempts") == 0))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            persisted = readPersisted();
+        }
+        assertEquals(size, persisted.length());
+        return persisted;
+    }
+
+    private JSONArray readPersisted() throws Exception {
+        File file = new File(context.getFilesDir(), "sync_outbox.json");
+        if (!file.exists()) {
+            return null;
+        }
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read == -1) {
+                    break;
+                }
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+        return new JSONArray(new String(data, "UTF-8"));
+    }
+}
@@ -0,0 +1,310 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives UploadManager against a local stand-in for Supabase's TUS endpoint.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UploadManagerTest {
+    private static final int CHUNK = 6 * 1024 * 1024;
+    private static final long TIMEOUT_MS = 20_000L;
+
+    private final TusServer tus = new TusServer();
+    private Context context;
+    private StubHttpServer server;
+    private UploadManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.getApplication();
+        new File(context.getFilesDir(), "uploads.json").delete();
+        server = new StubHttpServer(tus);
+        tus.location = server.url("/upload/1");
+        manager = new UploadManager(context, new SessionState(context, null), server.url(""));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void uploadsInChunksWithoutUpsertByDefault() throws Exception {
+        byte[] data = randomBytes(CHUNK * 2 + 1234);
+
+        manager.enqueue(source("doc.pdf", data), "documents", "renter 1/agreement.pdf", "application/pdf", false);
+        awaitDone();
+
+        assertArrayEquals(data, tus.received.toByteArray());
+        assertEquals("false", tus.createRequest.header("x-upsert"));
+        assertEquals(3, tus.patchOffsets.size());
+    }
+
+    @Test
+    public void resumesFromServerOffsetAfterFailedChunk() throws Exception {
+        byte[] data = randomBytes(CHUNK * 2 + 10);
+        // The second chunk fails once; the retry must ask the server instead of starting over
+        tus.failPatchAt = CHUNK;
+
+        manager.enqueue(source("doc.pdf", data), "documents", "agreement.pdf", null, true);
+        awaitDone();
+
+        assertArrayEquals(data, tus.received.toByteArray());
+        assertEquals("true", tus.createRequest.header("x-upsert"));
+        assertEquals(1, tus.heads);
+        List<Long> expected = new ArrayList<>();
+        expected.add(0L);
+        expected.add((long) CHUNK);
+        expected.add((long) CHUNK);
+        expected.add(2L * CHUNK);
+        assertEquals(expected, tus.patchOffsets);
+    }
+
+    @Test
+    public void resyncsOnOffsetMismatch() throws Exception {
+        byte[] data = randomBytes(CHUNK + 10);
+        // The server keeps only part of the first chunk and a proxy strips its Upload-Offset, so
+        // the client's next PATCH starts past what the server has
+        tus.truncateAt = 0;
+
+        manager.enqueue(source("doc.pdf", data), "documents", "agreement.pdf", null, false);
+        awaitDone();
+
+        assertArrayEquals(data, tus.received.toByteArray());
+        assertEquals(1, tus.conflicts);
+        assertEquals(1, tus.heads);
+    }
+
+    @Test
+    public void returnsBeforeTheSourceIsCopied() throws Exception {
+        final byte[] data = randomBytes(CHUNK + 10);
+        final CountDownLatch release = new CountDownLatch(1);
+        Uri uri = Uri.parse("content://com.android.providers.downloads.documents/document/slow.pdf");
+        shadowOf(context.getContentResolver()).registerInputStream(uri, new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                try {
+                    // Stands in for a slow provider; enqueue must not be waiting on this
+                    assertTrue(release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                return super.read(buffer, offset, length);
+            }
+        });
+
+        String id = manager.enqueue(uri.toString(), "documents", "agreement.pdf", null, false);
+        JSONArray queued = new JSONArray(manager.toJson());
+        assertEquals(id, queued.getJSONObject(0).getString("id"));
+        assertEquals(UploadManager.STATE_STAGING, queued.getJSONObject(0).getString("state"));
+        assertNull(tus.createRequest);
+
+        release.countDown();
+        awaitDone();
+        assertArrayEquals(data, tus.received.toByteArray());
+    }
+
+    @Test
+    public void dropsUploadWhenStagingFails() throws Exception {
+        Uri uri = Uri.parse("content://com.android.providers.downloads.documents/document/broken.pdf");
+        shadowOf(context.getContentResolver()).registerInputStream(uri, new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("provider went away");
+            }
+        });
+
+        manager.enqueue(uri.toString(), "documents", "agreement.pdf", null, false);
+        awaitDone();
+        assertNull(tus.createRequest);
+    }
+
+    @Test
+    public void networkChangeRestartsOnlyUploadsThatRanOutOfAttempts() throws Exception {
+        byte[] data = randomBytes(1234);
+        manager = restoredManager(data);
+
+        manager.onNetworkAvailable();
+        awaitOnly("paused-by-js");
+
+        assertArrayEquals(data, tus.received.toByteArray());
+        assertEquals(UploadManager.STATE_PAUSED, new JSONArray(manager.toJson()).getJSONObject(0).getString("state"));
+    }
+
+    @Test
+    public void launchRestartsUploadsThatRanOutOfAttempts() throws Exception {
+        byte[] data = randomBytes(1234);
+        manager = restoredManager(data);
+
+        manager.resumePending();
+        awaitOnly("paused-by-js");
+
+        assertArrayEquals(data, tus.received.toByteArray());
+    }
+
+    @Test
+    public void refusesNonContentSources() {
+        String[] sources = {
+            context.getFilesDir() + "/uploads.json",
+            "file://" + context.getFilesDir() + "/sync_outbox.json",
+        };
+        for (String source : sources) {
+            try {
+                manager.enqueue(source, "documents", "x", null, false);
+                fail("accepted " + source);
+            } catch (IOException expected) {
+                // Refused before anything is copied
+            }
+        }
+        assertEquals("[]", manager.toJson());
+    }
+
+    private String source(String name, byte[] data) {
+        Uri uri = Uri.parse("content://com.android.providers.downloads.documents/document/" + name);
+        shadowOf(context.getContentResolver()).registerInputStream(uri, new ByteArrayInputStream(data));
+        return uri.toString();
+    }
+
+    /**
+     * A manager started over the state a previous process left: one upload that ran out of
+     * attempts ("out-of-attempts") and one JS paused ("paused-by-js").
+     */
+    private UploadManager restoredManager(byte[] data) throws Exception {
+        JSONArray state = new JSONArray();
+        state.put(persisted("out-of-attempts", data, UploadManager.STATE_WAITING));
+        state.put(persisted("paused-by-js", data, UploadManager.STATE_PAUSED));
+        FileOutputStream out = new FileOutputStream(new File(context.getFilesDir(), "uploads.json"));
+        try {
+            out.write(state.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return new UploadManager(context, new SessionState(context, null), server.url(""));
+    }
+
+    private JSONObject persisted(String id, byte[] data, String state) throws Exception {
+        File dir = new File(context.getFilesDir(), "uploads");
+        dir.mkdirs();
+        File file = new File(dir, id);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return new JSONObject()
+            .put("id", id)
+            .put("bucket", "documents")
+            .put("object_path", id + ".pdf")
+            .put("content_type", "application/pdf")
+            .put("upsert", false)
+            .put("file", file.getPath())
+            .put("size", data.length)
+            .put("upload_url", JSONObject.NULL)
+            .put("offset", 0)
+            .put("state", state);
+    }
+
+    private void awaitOnly(String id) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        JSONArray remaining = new JSONArray(manager.toJson());
+        while (remaining.length() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            remaining = new JSONArray(manager.toJson());
+        }
+        assertEquals(1, remaining.length());
+        assertEquals(id, remaining.getJSONObject(0).getString("id"));
+        assertNull(tus.error);
+    }
+
+    private void awaitDone() throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (new JSONArray(manager.toJson()).length() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals("[]", manager.toJson());
+        assertNull(tus.error);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /** Just enough of TUS 1.0: creation, offset HEAD and PATCH via method override. */
+    private static final class TusServer implements StubHttpServer.Handler {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final List<Long> patchOffsets = new ArrayList<>();
+        volatile String location;
+        volatile StubHttpServer.Request createRequest;
+        volatile int heads;
+        volatile int conflicts;
+        volatile long failPatchAt = -1;
+        volatile long truncateAt = -1;
+        volatile String error;
+
+        @Override
+        public synchronized StubHttpServer.Response handle(StubHttpServer.Request request) {
+            if (!"1.0.0".equals(request.header("Tus-Resumable"))) {
+                error = "missing Tus-Resumable on " + request.method;
+            }
+            if (request.path.equals("/storage/v1/upload/resumable") && "POST".equals(request.method)
+                    && request.header("X-HTTP-Method-Override") == null) {
+                createRequest = request;
+                return StubHttpServer.Response.empty(201).header("Location", location);
+            }
+            if ("HEAD".equals(request.method)) {
+                heads++;
+                return StubHttpServer.Response.empty(200).header("Upload-Offset", String.valueOf(received.size()));
+            }
+            long offset = Long.parseLong(request.header("Upload-Offset"));
+            patchOffsets.add(offset);
+            if (offset != received.size()) {
+                conflicts++;
+                return StubHttpServer.Response.empty(409);
+            }
+            if (offset == failPatchAt) {
+                failPatchAt = -1;
+                return StubHttpServer.Response.of(500, "{\"error\":\"flaky\"}");
+            }
+            if (offset == truncateAt) {
+                truncateAt = -1;
+                received.write(request.body, 0, request.body.length / 2);
+                return StubHttpServer.Response.empty(204);
+            }
+            received.write(request.body, 0, request.body.length);
+            return StubHttpServer.Response.empty(204).header("Upload-Offset", String.valueOf(received.size()));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.livenzo.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.webkit.WebView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+
+/**
+ * The singletons an activity hands its WebView to must not keep it alive once it is destroyed,
+ * even when nothing detaches it (a crash in onDestroy, a subclass that forgets).
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WebViewLeakTest {
+
+    @Test
+    public void destroyedActivityIsCollectedWhileStillAttachedToTheBridge() throws Exception {
+        WeakReference<Activity> activity = attachAndDestroy();
+
+        awaitCollected(activity);
+        assertNull("destroyed activity is still reachable", activity.get());
+    }
+
+    @Test
+    public void eventsRaisedAfterwardsWaitForTheNextWebView() throws Exception {
+        awaitCollected(attachAndDestroy());
+
+        WebEventBridge.getInstance().dispatch("leakTestEvent", "after destroy");
+        Activity next = Robolectric.buildActivity(Activity.class).setup().get();
+        WebView webView = new WebView(next);
+        WebEventBridge.getInstance().attach(webView);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(17));
+
+        assertTrue(shadowOf(webView).getLastEvaluatedJavascript().contains("leakTestEvent"));
+        assertEquals(0, WebEventBridge.getInstance().getQueueDepth());
+        WebEventBridge.getInstance().detach(webView);
+    }
+
+    private static WeakReference<Activity> attachAndDestroy() {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).setup();
+        Activity activity = controller.get();
+        WebView webView = new WebView(activity);
+        activity.setContentView(webView);
+        WebEventBridge.getInstance().attach(webView);
+        // Owned work and an event queued with a callback, as MainActivity does at startup
+        NetworkExecutor.getInstance().submit(activity, "leak-test", () -> { });
+        WebEventBridge.getInstance().dispatchJson("leakTestStartup", "true", () -> { });
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(17));
+
+        // No detach: the bridge's reference alone must not pin the activity
+        controller.pause().stop().destroy();
+        return new WeakReference<>(activity);
+    }
+
+    private static void awaitCollected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            // Garbage to push the collector along, then a full GC request
+            byte[][] garbage = new byte[64][];
+            for (int j = 0; j < garbage.length; j++) {
+                garbage[j] = new byte[64 * 1024];
+            }
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Thread.sleep(50);
+        }
+    }
+}
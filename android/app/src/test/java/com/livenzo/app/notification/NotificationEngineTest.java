@@ -0,0 +1,40 @@
+package com.livenzo.app.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.NotificationManager;
+import android.content.Context;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationEngineTest {
+
+    @Test
+    public void laterDigestDoesNotReplaceAnUnreadOne() {
+        Context context = RuntimeEnvironment.getApplication();
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        NotificationEngine.getInstance().showDigest(context, batch("Room listed"));
+        NotificationEngine.getInstance().showDigest(context, batch("Price dropped"));
+
+        assertEquals(2, shadowOf(manager).getAllNotifications().size());
+    }
+
+    private static List<NotificationPayload> batch(String title) {
+        Map<String, String> data = new HashMap<>();
+        data.put("type", "listing_update");
+        List<NotificationPayload> batch = new ArrayList<>();
+        batch.add(NotificationPayload.fromMessage(data, title, "Tap to see it"));
+        return batch;
+    }
+}
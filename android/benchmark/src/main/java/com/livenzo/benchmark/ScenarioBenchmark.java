@@ -0,0 +1,184 @@
+package com.livenzo.benchmark;
+
+import android.os.Bundle;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * The user-facing flows the scenario.* histograms cover, timed through the matching async trace
+ * sections the app opens: cold start to userAlreadyLoggedIn delivered, push received to
+ * notification posted, notification tap to event delivered, and OTP verify to event delivered.
+ * Native Supabase calls go to StubSupabaseServer, the signed-in user is seeded through the
+ * benchmark build's BenchmarkSessionReceiver and pushes are injected through its
+ * BenchmarkPushReceiver, so only the OTP scenario touches a real backend.
+ *
+ * The OTP scenario needs a Firebase test phone number and its fixed code:
+ * ./gradlew :benchmark:connectedBenchmarkAndroidTest
+ *     -Pandroid.testInstrumentationRunnerArguments.otpPhone=9999999999
+ *     -Pandroid.testInstrumentationRunnerArguments.otpCode=123456
+ *
+ * Results land as JSON under build/outputs/connected_android_test_additional_output.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScenarioBenchmark {
+    private static final String PACKAGE = StartupBenchmark.PACKAGE;
+    private static final int ITERATIONS = 10;
+    private static final long UI_TIMEOUT_MS = 15_000L;
+
+    @Rule
+    public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    private StubSupabaseServer supabase;
+    private int iteration;
+
+    @Before
+    public void setUp() throws IOException {
+        supabase = new StubSupabaseServer();
+        grantNotifications(UiDevice.getInstance(InstrumentationRegistry.getInstrumentation()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        supabase.close();
+    }
+
+    @Test
+    public void coldStartLoggedIn() {
+        // The section is the only metric, so a launch that never took the logged-in path fails
+        // with no metrics rather than reporting a logged-out start
+        rule.measureRepeated(PACKAGE,
+            Collections.<Metric>singletonList(
+                new TraceSectionMetric("scenario.cold_start_logged_in", TraceSectionMetric.Mode.First)),
+            new CompilationMode.Partial(), StartupMode.COLD, ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                // Each iteration, since the page may sign out a session it cannot match. 32 is
+                // FLAG_INCLUDE_STOPPED_PACKAGES, for when the app has not run since install
+                shell(scope.getDevice(), "am broadcast -a com.livenzo.app.BENCHMARK_SESSION -p " + PACKAGE
+                    + " -f 32 --es uid benchmark-user --es phone +910000000000");
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                scope.startActivityAndWait();
+                return Unit.INSTANCE;
+            });
+    }
+
+    @Test
+    public void pushToPosted() {
+        rule.measureRepeated(PACKAGE,
+            Collections.<Metric>singletonList(
+                new TraceSectionMetric("scenario.push_to_posted", TraceSectionMetric.Mode.First)),
+            new CompilationMode.Partial(), null, ITERATIONS,
+            scope -> {
+                scope.startActivityAndWait();
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                String body = "Benchmark message " + (++iteration);
+                shell(scope.getDevice(), "am broadcast -a com.livenzo.app.BENCHMARK_PUSH -p " + PACKAGE
+                    + " --es type chat_message --es room_id benchmark-room-" + iteration
+                    + " --es message_id benchmark-" + iteration
+                    + " --es title Benchmark --es body '" + body + "'");
+                scope.getDevice().openNotification();
+                scope.getDevice().wait(Until.hasObject(By.text(body)), UI_TIMEOUT_MS);
+                scope.getDevice().pressBack();
+                return Unit.INSTANCE;
+            });
+    }
+
+    @Test
+    public void tapToEvent() {
+        rule.measureRepeated(PACKAGE,
+            Arrays.<Metric>asList(
+                new StartupTimingMetric(),
+                new TraceSectionMetric("scenario.tap_to_event", TraceSectionMetric.Mode.First)),
+            new CompilationMode.Partial(), StartupMode.WARM, ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                // The extras FCM puts on the launch intent when it displays a data push itself
+                iteration++;
+                scope.startActivityAndWait(intent -> {
+                    intent.putExtra("type", "chat_message");
+                    intent.putExtra("room_id", "benchmark-room-" + iteration);
+                    intent.putExtra("message_id", "benchmark-" + iteration);
+                    return Unit.INSTANCE;
+                });
+                return Unit.INSTANCE;
+            });
+    }
+
+    @Test
+    public void otpVerifyToEvent() {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        final String phone = arguments.getString("otpPhone");
+        final String code = arguments.getString("otpCode");
+        Assume.assumeTrue("otpPhone and otpCode instrumentation arguments are required", phone != null && code != null);
+
+        rule.measureRepeated(PACKAGE,
+            Collections.<Metric>singletonList(
+                new TraceSectionMetric("scenario.otp_verify_to_event", TraceSectionMetric.Mode.First)),
+            new CompilationMode.Partial(), null, ITERATIONS,
+            scope -> {
+                // Signed out, on the phone form, with the code already entered
+                UiDevice device = scope.getDevice();
+                scope.killProcess();
+                shell(device, "pm clear " + PACKAGE);
+                grantNotifications(device);
+                scope.startActivityAndWait();
+                UiObject2 phoneField = device.wait(Until.findObject(By.clazz("android.widget.EditText")), UI_TIMEOUT_MS);
+                phoneField.setText(phone);
+                device.findObject(By.text("Send OTP")).click();
+                device.wait(Until.hasObject(By.text("Verify OTP")), UI_TIMEOUT_MS);
+                shell(device, "input text " + code);
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                UiDevice device = scope.getDevice();
+                device.findObject(By.text("Verify OTP")).click();
+                device.wait(Until.gone(By.text("Verify OTP")), UI_TIMEOUT_MS);
+                return Unit.INSTANCE;
+            });
+    }
+
+    private static void grantNotifications(UiDevice device) {
+        // Prints an error and changes nothing below API 33, where no grant is needed
+        shell(device, "pm grant " + PACKAGE + " android.permission.POST_NOTIFICATIONS");
+    }
+
+    private static void shell(UiDevice device, String command) {
+        try {
+            device.executeShellCommand(command);
+        } catch (IOException e) {
+            throw new IllegalStateException("Shell command failed: " + command, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.livenzo.benchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Cold start of the benchmark build, with and without the bundled baseline profile. Besides
+ * time to initial display, the trace sections show when the deferred startup steps finish.
+ *
+ * Run with ./gradlew :benchmark:connectedBenchmarkAndroidTest on a physical device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    static final String PACKAGE = "com.livenzo.app";
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartNoCompilation() {
+        coldStart(new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStartBaselineProfile() {
+        coldStart(new CompilationMode.Partial());
+    }
+
+    private void coldStart(CompilationMode mode) {
+        List<Metric> metrics = Arrays.asList(
+            new StartupTimingMetric(),
+            new TraceSectionMetric("startup.auth_manager", TraceSectionMetric.Mode.First),
+            new TraceSectionMetric("startup.login_state", TraceSectionMetric.Mode.First),
+            new TraceSectionMetric("startup.delta_sync", TraceSectionMetric.Mode.First));
+        rule.measureRepeated(PACKAGE, metrics, mode, StartupMode.COLD, ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                scope.startActivityAndWait();
+                return Unit.INSTANCE;
+            });
+    }
+}
@@ -0,0 +1,113 @@
+package com.livenzo.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback HTTP server on the port the benchmark build sends native Supabase API and edge-function
+ * calls to, so scenario timings do not include the real backend and no token sync reaches
+ * production. PostgREST reads get an empty page, other calls an empty object, and realtime
+ * upgrades are refused so the socket sits in backoff.
+ */
+final class StubSupabaseServer implements Closeable {
+    // Matches SUPABASE_API_URL and SUPABASE_FUNCTIONS_URL in the app's benchmark build type
+    static final int PORT = 8787;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+
+    StubSupabaseServer() throws IOException {
+        serverSocket = new ServerSocket(PORT, 50, InetAddress.getByName("127.0.0.1"));
+        serverSocket.setReuseAddress(true);
+        connections.execute(this::acceptLoop);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    /** Answers requests on one keep-alive connection until the client goes away. */
+    private void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = readLine(in)) != null && !requestLine.isEmpty()) {
+                int contentLength = 0;
+                boolean upgrade = false;
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    String lower = line.toLowerCase(Locale.US);
+                    if (lower.startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    } else if (lower.startsWith("upgrade:")) {
+                        upgrade = true;
+                    }
+                }
+                for (int i = 0; i < contentLength; i++) {
+                    in.read();
+                }
+
+                String path = requestLine.split(" ")[1];
+                int status = upgrade ? 404 : 200;
+                String body = upgrade ? "" : path.startsWith("/rest/v1/") ? "[]" : "{}";
+                byte[] bytes = body.getBytes(UTF_8);
+                out.write(("HTTP/1.1 " + status + (status == 200 ? " OK" : " Not Found") + "\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + bytes.length + "\r\n"
+                    + (upgrade ? "Connection: close\r\n" : "")
+                    + "\r\n").getBytes(UTF_8));
+                out.write(bytes);
+                out.flush();
+                if (upgrade) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
@@ -2,6 +2,14 @@ import { useState, useEffect } from 'react';
 import { supabase } from '@/integrations/supabase/client';
 import type { User, Session } from '@supabase/supabase-js';
 
+// Hand the Supabase JWT to the native layer so push prefetch can read RLS-protected rows
+const shareSessionWithNative = (session: Session | null) => {
+  const android = (window as any).Android;
+  if (android && android.setSupabaseAccessToken) {
+    android.setSupabaseAccessToken(session?.access_token ?? null);
+  }
+};
+
 export const useSupabaseSession = () => {
   const [user, setUser] = useState<User | null>(null);
   const [session, setSession] = useState<Session | null>(null);
@@ -16,6 +24,7 @@ export const useSupabaseSession = () => {
       } else {
         setSession(session);
         setUser(session?.user ?? null);
+        shareSessionWithNative(session);
       }
       setLoading(false);
     };
@@ -28,6 +37,7 @@ export const useSupabaseSession = () => {
         console.log('Supabase auth event:', event, session?.user?.id);
         setSession(session);
         setUser(session?.user ?? null);
+        shareSessionWithNative(session);
         setLoading(false);
       }
     );
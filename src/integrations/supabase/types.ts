@@ -607,6 +607,7 @@ export type Database = {
           property_id: string | null
           renter_id: string
           title: string | null
+          updated_at: string
         }
         Insert: {
           archived?: boolean | null
@@ -617,6 +618,7 @@ export type Database = {
           property_id?: string | null
           renter_id: string
           title?: string | null
+          updated_at?: string
         }
         Update: {
           archived?: boolean | null
@@ -627,6 +629,7 @@ export type Database = {
           property_id?: string | null
           renter_id?: string
           title?: string | null
+          updated_at?: string
         }
         Relationships: []
       }
@@ -12,6 +12,10 @@ import { useNavigate, useParams } from 'react-router-dom';
 import { Badge } from '@/components/ui/badge';
 import { supabase } from "@/integrations/supabase/client";
 
+// The same insert can arrive from both the native and the supabase-js subscription
+const appendMessage = (messages: ChatMessage[], message: ChatMessage) =>
+  messages.some(existing => existing.id === message.id) ? messages : [...messages, message];
+
 const Chats = () => {
   const { user } = useAuth();
   const navigate = useNavigate();
@@ -60,7 +64,7 @@ const Chats = () => {
       }, (payload) => {
         // Update messages if it's for the current room
         if (activeRoom === payload.new.room_id) {
-          setMessages(prevMessages => [...prevMessages, payload.new as ChatMessage]);
+          setMessages(prevMessages => appendMessage(prevMessages, payload.new as ChatMessage));
           markMessagesAsRead(user.id, payload.new.room_id, payload.new.sender_id);
         }
         
@@ -100,6 +104,26 @@ const Chats = () => {
     loadMessages();
   }, [activeRoom, user]);
   
+  // On Android the native realtime client delivers inserts first and drops pushes for the open room
+  useEffect(() => {
+    const android = (window as any).Android;
+    if (!user || !android?.setActiveChatRoom) return;
+
+    android.setActiveChatRoom(activeRoom);
+    const onRealtimeInsert = (event: Event) => {
+      const { table, record } = (event as CustomEvent).detail || {};
+      if (table !== 'chat_messages' || !record || record.room_id !== activeRoom) return;
+      setMessages(prevMessages => appendMessage(prevMessages, record as ChatMessage));
+      markMessagesAsRead(user.id, record.room_id, record.sender_id);
+    };
+    window.addEventListener('realtimeInsert', onRealtimeInsert);
+
+    return () => {
+      window.removeEventListener('realtimeInsert', onRealtimeInsert);
+      android.setActiveChatRoom(null);
+    };
+  }, [activeRoom, user]);
+
   // Scroll to bottom when messages change
   useEffect(() => {
     messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
@@ -213,7 +213,23 @@ export class NotificationNavigationService {
     console.log('🔍 Checking for startup notification data...');
     
     // Check if Android interface is available
-    if (typeof window.Android !== 'undefined' && window.Android.getNotificationData) {
+    if (typeof window.Android !== 'undefined' && window.Android.takePendingNotificationTaps) {
+      try {
+        // All taps queued natively since launch, oldest first; navigate to the most recent one
+        const pendingTaps = JSON.parse(window.Android.takePendingNotificationTaps() || '[]');
+        if (pendingTaps.length > 0) {
+          const notificationData = pendingTaps[pendingTaps.length - 1];
+          console.log('📱 Found Android startup notification data:', notificationData, `(${pendingTaps.length} pending)`);
+          setTimeout(() => {
+            this.handleNotificationTap(notificationData);
+          }, 800);
+        } else {
+          console.log('📱 No Android startup notification data');
+        }
+      } catch (error) {
+        console.error('❌ Error checking Android startup notification:', error);
+      }
+    } else if (typeof window.Android !== 'undefined' && window.Android.getNotificationData) {
       try {
         const notificationDataString = window.Android.getNotificationData();
         if (notificationDataString) {
@@ -265,6 +281,7 @@ declare global {
   interface Window {
     Android?: {
       getNotificationData?: () => string;
+      takePendingNotificationTaps?: () => string;
       clearNotificationData?: () => void;
       [key: string]: any;
     };
@@ -106,15 +106,30 @@ export const saveOwnerLocationSecure = async (
 /**
  * Securely gets maps URLs using edge function
  */
+// maps-proxy is a POST, so the native WebView cache can't see it; its URLs only depend on the
+// coordinates, so memoize them for the session instead of re-invoking the function per render
+const MAPS_URL_CACHE_LIMIT = 50;
+const mapsUrlCache = new Map<string, { embedUrl?: string; directionsUrl?: string }>();
+
+// Nothing from one session is served to the next
+supabase.auth.onAuthStateChange((event) => {
+  if (event === 'SIGNED_OUT') mapsUrlCache.clear();
+});
+
 export const getMapsUrlsSecure = async (
   latitude: number,
   longitude: number
 ): Promise<{ embedUrl?: string; directionsUrl?: string } | null> => {
   try {
+    // Checked on hits too, so a cached URL is never handed out without a valid session
     const authResult = await validateAuthentication();
     if (!authResult.isValid) {
       return null;
     }
+
+    const cacheKey = `${latitude},${longitude}`;
+    const cached = mapsUrlCache.get(cacheKey);
+    if (cached) return cached;
     
     const { data: { session } } = await supabase.auth.getSession();
     if (!session) return null;
@@ -140,10 +155,16 @@ export const getMapsUrlsSecure = async (
       return null;
     }
     
-    return {
+    const urls = {
       embedUrl: embedResponse.data?.embedUrl,
       directionsUrl: directionsResponse.data?.directionsUrl
     };
+    if (mapsUrlCache.size >= MAPS_URL_CACHE_LIMIT) {
+      // Maps iterate in insertion order, so this drops the oldest entry
+      mapsUrlCache.delete(mapsUrlCache.keys().next().value as string);
+    }
+    mapsUrlCache.set(cacheKey, urls);
+    return urls;
   } catch (error) {
     console.error('Error getting maps URLs:', error);
     return null;
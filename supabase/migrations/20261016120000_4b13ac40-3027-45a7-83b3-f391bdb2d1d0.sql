@@ -0,0 +1,15 @@
+-- Notices are edited after creation (e.g. archived when a renter moves to another owner), so the
+-- app's delta sync needs an updated_at to notice those edits
+ALTER TABLE public.notices
+  ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+UPDATE public.notices SET updated_at = created_at;
+
+DROP TRIGGER IF EXISTS update_notices_updated_at ON public.notices;
+CREATE TRIGGER update_notices_updated_at
+BEFORE UPDATE ON public.notices
+FOR EACH ROW
+EXECUTE FUNCTION public.update_modified_column();
+
+-- Delta sync pages on (updated_at, id)
+CREATE INDEX IF NOT EXISTS idx_notices_updated_at_id ON public.notices (updated_at, id);